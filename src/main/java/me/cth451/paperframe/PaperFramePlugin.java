@@ -3,25 +3,27 @@ package me.cth451.paperframe;
 import me.cth451.paperframe.command.*;
 import me.cth451.paperframe.dependency.DependencyManager;
 import me.cth451.paperframe.eventlistener.AsyncTabCompleteListener;
+import me.cth451.paperframe.eventlistener.FrameIndexListener;
 import me.cth451.paperframe.eventlistener.FrameProtectListener;
-import me.cth451.paperframe.task.FrameHighlightTask;
+import me.cth451.paperframe.eventlistener.HighlightSessionListener;
+import me.cth451.paperframe.task.BulkJobManager;
+import me.cth451.paperframe.task.HighlightSessionManager;
+import me.cth451.paperframe.task.HighlightStats;
+import me.cth451.paperframe.task.SharedHighlightCache;
+import me.cth451.paperframe.task.StickyDrawLoop;
+import me.cth451.paperframe.task.UndoManager;
+import me.cth451.paperframe.util.FrameIndex;
 import me.cth451.paperframe.util.HighlightOptions;
 import me.cth451.paperframe.util.Targeting;
 import me.cth451.paperframe.util.tileviewer.TileSetViewerClient;
-import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.HashMap;
 import java.util.Objects;
-import java.util.UUID;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class PaperFramePlugin extends JavaPlugin {
 
-	/* protect access to activeUpdateTask */
-	private final ReentrantLock activeUpdateTaskLock = new ReentrantLock();
-	private int activeUpdateTask = -1;
-	public static final HashMap<UUID, HighlightOptions> activeHighlightUsers = new HashMap<>();
+	/* Active /framehighlight sessions */
+	private final HighlightSessionManager highlightSessions = new HighlightSessionManager(this);
 
 	/* Dependency manager */
 	private DependencyManager dependencyManager = null;
@@ -29,6 +31,24 @@ public class PaperFramePlugin extends JavaPlugin {
 	/* API Client to tile set viewer */
 	private TileSetViewerClient viewerClient = null;
 
+	/* Index of loaded item frames */
+	private final FrameIndex frameIndex = new FrameIndex();
+
+	/* Repeating draws of feedback outlines */
+	private final StickyDrawLoop stickyDrawLoop = new StickyDrawLoop(this);
+
+	/* Measurements of highlighting cost */
+	private final HighlightStats highlightStats = new HighlightStats();
+
+	/* Highlight filter results shared between sessions */
+	private final SharedHighlightCache sharedHighlightCache = new SharedHighlightCache(this);
+
+	/* Operations on many frames spread over several ticks */
+	private final BulkJobManager bulkJobs = new BulkJobManager(this);
+
+	/* Per player undo / redo history */
+	private final UndoManager undoManager = new UndoManager(this);
+
 	private void registerCommands() {
 		Objects.requireNonNull(this.getCommand("frameprotect")).setExecutor(new FrameProtect(this));
 		Objects.requireNonNull(this.getCommand("framehighlight")).setExecutor(new FrameHighlight(this));
@@ -38,44 +58,16 @@ public class PaperFramePlugin extends JavaPlugin {
 		Objects.requireNonNull(this.getCommand("framemaps")).setExecutor(new FrameMapStack(this));
 		Objects.requireNonNull(this.getCommand("frameunmap")).setExecutor(new FrameUnmap(this));
 		Objects.requireNonNull(this.getCommand("frame2d")).setExecutor(new Frame2d(this));
+		Objects.requireNonNull(this.getCommand("framecancel")).setExecutor(new FrameCancel(this));
+		Objects.requireNonNull(this.getCommand("frameundo")).setExecutor(new FrameUndo(this));
+		Objects.requireNonNull(this.getCommand("frameredo")).setExecutor(new FrameRedo(this));
 	}
 
 	private void registerEventListeners() {
 		getServer().getPluginManager().registerEvents(new FrameProtectListener(this), this);
 		getServer().getPluginManager().registerEvents(new AsyncTabCompleteListener(this), this);
-	}
-
-	public void startPlayerUpdate() {
-		// Start Active player update
-		boolean started = false;
-		{
-			activeUpdateTaskLock.lock();
-			if (activeUpdateTask == -1) {
-				activeUpdateTask = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, new FrameHighlightTask(this),
-				                                                                   0, 13);
-				started = true;
-			}
-			activeUpdateTaskLock.unlock();
-		}
-		if (started) {
-			getLogger().info("Frame Highlight Task started");
-		}
-	}
-
-	public void stopPlayerUpdate() {
-		boolean stopped = false;
-		{
-			activeUpdateTaskLock.lock();
-			if (activeUpdateTask > 0) {
-				Bukkit.getScheduler().cancelTask(activeUpdateTask);
-				activeUpdateTask = -1;
-				stopped = true;
-			}
-			activeUpdateTaskLock.unlock();
-		}
-		if (stopped) {
-			getLogger().info("Frame Highlight Task stopped");
-		}
+		getServer().getPluginManager().registerEvents(new FrameIndexListener(this), this);
+		getServer().getPluginManager().registerEvents(new HighlightSessionListener(this), this);
 	}
 
 	public DependencyManager getDependencyManager() {
@@ -86,6 +78,37 @@ public class PaperFramePlugin extends JavaPlugin {
 		return this.viewerClient;
 	}
 
+	public FrameIndex getFrameIndex() {
+		return this.frameIndex;
+	}
+
+	public HighlightSessionManager getHighlightSessions() {
+		return this.highlightSessions;
+	}
+
+	/**
+	 * @return rolling measurements of /framehighlight cost - safe to read from any thread
+	 */
+	public HighlightStats getHighlightStats() {
+		return this.highlightStats;
+	}
+
+	public StickyDrawLoop getStickyDrawLoop() {
+		return this.stickyDrawLoop;
+	}
+
+	public SharedHighlightCache getSharedHighlightCache() {
+		return this.sharedHighlightCache;
+	}
+
+	public BulkJobManager getBulkJobs() {
+		return this.bulkJobs;
+	}
+
+	public UndoManager getUndoManager() {
+		return this.undoManager;
+	}
+
 	@Override
 	public void onEnable() {
 		this.registerCommands();
@@ -93,6 +116,10 @@ public class PaperFramePlugin extends JavaPlugin {
 		this.saveDefaultConfig();
 		this.dependencyManager = new DependencyManager(this);
 		this.viewerClient = new TileSetViewerClient(this);
+		/* Frames loaded before us (i.e. on /reload) never generate load events */
+		getServer().getWorlds().forEach(this.frameIndex::indexWorld);
+		/* Journals left behind by an unclean shutdown */
+		this.undoManager.purge();
 
 		HighlightOptions.plugin = this;
 		Targeting.plugin = this;
@@ -100,6 +127,11 @@ public class PaperFramePlugin extends JavaPlugin {
 
 	@Override
 	public void onDisable() {
-		this.stopPlayerUpdate();
+		this.highlightSessions.shutdown();
+		/* Before bulk jobs, so that operations cancelled below are not recorded any more */
+		this.undoManager.shutdown();
+		/* Before bulk jobs, so that feedback of operations cancelled below is not scheduled on a disabling plugin */
+		this.stickyDrawLoop.shutdown();
+		this.bulkJobs.shutdown();
 	}
 }
@@ -5,6 +5,8 @@ import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
 import com.google.common.collect.Iterables;
 import me.cth451.paperframe.PaperFramePlugin;
 import me.cth451.paperframe.command.base.IAsyncTabCompleteExecutor;
+import me.cth451.paperframe.command.base.PreparedCommandExecutor;
+import me.cth451.paperframe.task.UndoManager;
 import me.cth451.paperframe.util.IdRange;
 import me.cth451.paperframe.util.Targeting;
 import me.cth451.paperframe.util.exceptions.InvalidFrameCountException;
@@ -17,15 +19,17 @@ import me.cth451.paperframe.util.tileviewer.GroupMetadata;
 import net.kyori.adventure.text.Component;
 import org.bukkit.*;
 import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.MapMeta;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -47,13 +51,11 @@ import static me.cth451.paperframe.util.getopt.Unescape.escape;
  *     <li>"X+-N" X+N and downwards to X (inclusive)</li>
  * </ul>
  * Alternatively pass "-n tile_set_name" to fetch tile definitions from tileset viewer REST API.
+ * <p>
+ * Arguments, id ranges and tileset metadata are resolved off the main thread; the wall is only looked up and filled
+ * on the main thread. Replaced maps are recorded for /frameundo.
  */
-public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
-	/**
-	 * Ref to plugin instance itself
-	 */
-	private final PaperFramePlugin plugin;
-
+public class Frame2d extends PreparedCommandExecutor<Frame2d.Plan> implements IAsyncTabCompleteExecutor {
 	private final static UnixFlagSpec nameFlagSpec = new UnixFlagSpec("name",
 	                                                                  'n',
 	                                                                  UnixFlagSpec.FlagType.PARAMETRIZE,
@@ -70,20 +72,27 @@ public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
 
 	protected final static Particle.DustOptions options = new Particle.DustOptions(Color.RED, 1.0f);
 
+	/**
+	 * Validated tiling request
+	 *
+	 * @param argv0  alias of the command which was used
+	 * @param width  number of columns
+	 * @param height number of rows
+	 * @param ids    map ids, row by row from the top left corner
+	 */
+	record Plan(String argv0, int width, int height, List<Integer> ids) {
+	}
+
 	public Frame2d(PaperFramePlugin plugin) {
-		this.plugin = plugin;
+		super(plugin);
 	}
 
+	/**
+	 * Parse arguments and resolve map ids - tileset metadata is downloaded here if not cached, off the main thread
+	 */
 	@Override
-	public boolean onCommand(@NotNull CommandSender sender,
-	                         @NotNull Command command,
-	                         @NotNull String argv0,
-	                         @NotNull String[] argv1) {
-		if (!(sender instanceof Player player)) {
-			sender.sendMessage("This command can only be used by a player");
-			return false;
-		}
-
+	protected @Nullable Plan prepare(@NotNull Player player, @NotNull Command command, @NotNull String argv0,
+	                                 @NotNull String[] argv1) {
 		List<String> id_specs = new LinkedList<>();
 		HashMap<String, Object> parsed;
 		List<Integer> ids;
@@ -91,9 +100,8 @@ public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
 			parsed = argvParser.parse(List.of(argv1), id_specs);
 		} catch (IllegalArgumentException | PrintHelpException | ParameterRequiredException e) {
 			player.sendMessage(ChatColor.YELLOW + e.getMessage());
-			player.sendMessage(ChatColor.YELLOW + command.getDescription());
-			player.sendMessage(command.getUsage());
-			return true;
+			sendUsage(player, command);
+			return null;
 		}
 		int height = (int) parsed.getOrDefault("height", 1);
 		int width = (int) parsed.getOrDefault("width", 1);
@@ -103,32 +111,22 @@ public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
 			GroupMetadata metadata;
 			try {
 				metadata = this.plugin.getTileSetViewerClient().checkMetadataCache(tilesetName);
-			} catch (IllegalStateException e) {
+				if (metadata == null) {
+					player.sendMessage(ChatColor.YELLOW + "Retrieving tileset metadata for " + tilesetName);
+					metadata = this.plugin.getTileSetViewerClient().getMetadata(tilesetName);
+				}
+			} catch (IllegalStateException | FileNotFoundException e) {
 				player.sendMessage(ChatColor.RED + e.getMessage());
-				return true;
-			}
-			if (metadata == null) {
-				/* FIXME: Schedule background fetch and notify when ready */
-				String playerName = player.getName();
-				player.sendMessage(ChatColor.YELLOW + "Retrieving tileset metadata for " + tilesetName);
-				this.plugin.getTileSetViewerClient().scheduleMetadataFetch(
-						this.plugin,
-						tilesetName,
-						(success, message) -> {
-							Player notifyPlayer = Bukkit.getPlayer(playerName);
-							if (notifyPlayer == null) {
-								this.plugin.getComponentLogger().error("Unable to send message to player {}",
-								                                       playerName);
-								return;
-							}
-							notifyPlayer.sendMessage((success ? ChatColor.GREEN : ChatColor.RED) + message);
-						});
-				return true;
+				return null;
+			} catch (IOException e) {
+				this.plugin.getComponentLogger().error("Network Error", e);
+				player.sendMessage(ChatColor.RED + e.getMessage());
+				return null;
 			}
 			/* Override ids, width and height */
 			height = metadata.geometry.size();
 			width = metadata.geometry.get(0).size();
-			ids = new LinkedList<>();
+			ids = new ArrayList<>(width * height);
 			metadata.geometry.forEach(ids::addAll);
 			player.sendMessage(ChatColor.GREEN + String.format("Using tileset %s with %d rows %d columns",
 			                                                   tilesetName,
@@ -136,18 +134,36 @@ public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
 			                                                   width));
 		} else {
 			try {
-				ids = IdRange.parseIdRanges(id_specs);
+				/* Indexed while filling - keep lookups constant time */
+				ids = new ArrayList<>(IdRange.parseIdRanges(id_specs));
 			} catch (NumberFormatException e) {
 				player.sendMessage(ChatColor.RED + e.getMessage());
-				return true;
+				return null;
 			}
 		}
 
-		/* Sanity check: id max */
-		Optional<Integer> bad_id = ids.stream().filter(id -> Bukkit.getMap(id) == null).findAny();
+		/* Sanity check: rectangle size - frames are only looked up, and counted, in apply */
+		int cells = width * height;
+		if (cells != ids.size()) {
+			player.sendMessage(ChatColor.RED + String.format(
+					"Rectangle %dx%d has %d cells but %d map IDs were given.",
+					width,
+					height,
+					cells,
+					ids.size()));
+			return null;
+		}
+
+		return new Plan(argv0, width, height, ids);
+	}
+
+	@Override
+	protected void apply(@NotNull Player player, @NotNull Plan plan) {
+		/* Sanity check: id max - map registry is main thread only */
+		Optional<Integer> bad_id = plan.ids().stream().filter(id -> Bukkit.getMap(id) == null).findAny();
 		if (bad_id.isPresent()) {
 			player.sendMessage(ChatColor.RED + String.format("Map %d not found", bad_id.get()));
-			return true;
+			return;
 		}
 
 		/* Get targeting info */
@@ -155,50 +171,39 @@ public class Frame2d implements CommandExecutor, IAsyncTabCompleteExecutor {
 		                                                             TargetBlockInfo.FluidMode.NEVER);
 		if (targetInfo == null) {
 			player.sendMessage(ChatColor.RED + "Cannot find a block under cursor");
-			return true;
+			return;
 		}
 
 		List<ItemFrame> targets;
 		try {
 			targets = Targeting.byRectangleTopLeftCorner(targetInfo.getBlock(),
 			                                             targetInfo.getBlockFace(),
-			                                             width, height);
+			                                             plan.width(), plan.height());
 		} catch (InvalidFrameCountException e) {
 			player.sendMessage(ChatColor.RED + e.getMessage());
 			e.scheduleStickyDraw(plugin);
-			return true;
+			return;
 		} catch (IllegalArgumentException e) {
 			player.sendMessage(ChatColor.RED + e.getMessage());
-			return true;
-		}
-
-		/* Sanity check: fill area size */
-		if (targets.size() < ids.size()) {
-			player.sendMessage(ChatColor.RED + String.format(
-					"Not enough item frames found on the wall. Need %d frames, found %d frames.",
-					ids.size(),
-					targets.size()));
-			return true;
-		} else if (targets.size() > ids.size()) {
-			player.sendMessage(ChatColor.RED + String.format(
-					"Not enough map IDs given on command line. Need %d IDs, found %d IDs.",
-					targets.size(),
-					ids.size()));
-			return true;
+			return;
 		}
 
 		/* Execute fill */
+		UndoManager.Recording undo = this.plugin.getUndoManager().begin(player, player.getWorld(), "/" + plan.argv0());
 		for (int i = 0; i < targets.size(); i++) {
 			ItemFrame frame = targets.get(i);
-			int id = ids.get(i);
+			int id = plan.ids().get(i);
+			int mapBefore = UndoManager.mapId(frame);
+			int flagsBefore = UndoManager.flags(frame);
 			ItemStack content = new ItemStack(Material.FILLED_MAP, 1);
 			MapMeta meta = (MapMeta) content.getItemMeta();
 			meta.setMapId(id);
 			content.setItemMeta(meta);
 			frame.setItem(content);
+			this.plugin.getFrameIndex().touch(frame);
+			undo.modified(frame, mapBefore, flagsBefore);
 		}
-
-		return true;
+		undo.commit();
 	}
 
 	@Override
@@ -0,0 +1,33 @@
+package me.cth451.paperframe.command;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cancels the running bulk operation of the issuing player, see {@link me.cth451.paperframe.task.BulkJobManager}
+ */
+public class FrameCancel implements CommandExecutor {
+	private final PaperFramePlugin plugin;
+
+	public FrameCancel(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	@Override
+	public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String argv0, @NotNull String[] argv1) {
+		if (!(commandSender instanceof Player player)) {
+			commandSender.sendMessage("This command can only be used by a player");
+			return false;
+		}
+
+		if (this.plugin.getBulkJobs().cancel(player) == null) {
+			player.sendMessage(ChatColor.YELLOW + "You have no operation running");
+		}
+		return true;
+	}
+}
@@ -1,6 +1,11 @@
 package me.cth451.paperframe.command;
 
 import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.task.BulkJobManager;
+import me.cth451.paperframe.task.FrameHighlightTask;
+import me.cth451.paperframe.task.HighlightSession;
+import me.cth451.paperframe.task.UndoManager;
+import me.cth451.paperframe.util.ViewCuller;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -22,6 +27,19 @@ public class FrameConfigReload implements CommandExecutor {
 		commandSender.sendMessage("Config Reloaded!");
 		commandSender.sendMessage(String.format("commands.framehighlight.max_radius: %f", this.plugin.getConfig().getDouble("commands.framehighlight.max_radius")));
 		commandSender.sendMessage(String.format("commands.framehighlight.default_radius: %f", this.plugin.getConfig().getDouble("commands.framehighlight.default_radius")));
+		commandSender.sendMessage(String.format("commands.framehighlight.update_period: %d", this.plugin.getConfig().getInt("commands.framehighlight.update_period", FrameHighlightTask.DEFAULT_PERIOD)));
+		commandSender.sendMessage(String.format("commands.framehighlight.tick_budget_us: %d", this.plugin.getConfig().getLong("commands.framehighlight.tick_budget_us", FrameHighlightTask.DEFAULT_TICK_BUDGET_US)));
+		commandSender.sendMessage(String.format("commands.framehighlight.lod_full_distance: %f", this.plugin.getConfig().getDouble("commands.framehighlight.lod_full_distance", HighlightSession.DEFAULT_LOD_FULL_DISTANCE)));
+		commandSender.sendMessage(String.format("commands.framehighlight.lod_corners_distance: %f", this.plugin.getConfig().getDouble("commands.framehighlight.lod_corners_distance", HighlightSession.DEFAULT_LOD_CORNERS_DISTANCE)));
+		commandSender.sendMessage(String.format("commands.framehighlight.max_particles_per_player: %d", this.plugin.getConfig().getInt("commands.framehighlight.max_particles_per_player", FrameHighlightTask.DEFAULT_MAX_PARTICLES_PER_PLAYER)));
+		commandSender.sendMessage(String.format("commands.framehighlight.max_particles_per_tick: %d", this.plugin.getConfig().getInt("commands.framehighlight.max_particles_per_tick", FrameHighlightTask.DEFAULT_MAX_PARTICLES_PER_TICK)));
+		commandSender.sendMessage(String.format("commands.framehighlight.view_cone_angle: %f", this.plugin.getConfig().getDouble("commands.framehighlight.view_cone_angle", ViewCuller.DEFAULT_VIEW_CONE_ANGLE)));
+		commandSender.sendMessage(String.format("commands.framehighlight.occlusion_culling: %b", this.plugin.getConfig().getBoolean("commands.framehighlight.occlusion_culling", ViewCuller.DEFAULT_OCCLUSION_CULLING)));
+		commandSender.sendMessage(String.format("commands.framehighlight.occlusion_cache_ticks: %d", this.plugin.getConfig().getInt("commands.framehighlight.occlusion_cache_ticks", ViewCuller.DEFAULT_OCCLUSION_CACHE_TICKS)));
+		commandSender.sendMessage(String.format("commands.bulk.tick_budget_us: %d", this.plugin.getConfig().getLong("commands.bulk.tick_budget_us", BulkJobManager.DEFAULT_TICK_BUDGET_US)));
+		commandSender.sendMessage(String.format("commands.bulk.progress_interval_ticks: %d", this.plugin.getConfig().getInt("commands.bulk.progress_interval_ticks", BulkJobManager.DEFAULT_PROGRESS_INTERVAL_TICKS)));
+		commandSender.sendMessage(String.format("commands.undo.max_depth: %d", this.plugin.getConfig().getInt("commands.undo.max_depth", UndoManager.DEFAULT_MAX_DEPTH)));
+		commandSender.sendMessage(String.format("commands.undo.spill_records: %d", this.plugin.getConfig().getInt("commands.undo.spill_records", UndoManager.DEFAULT_SPILL_RECORDS)));
 		commandSender.sendMessage(String.format("util.tileviewer.endpoint_base: %s", this.plugin.getConfig().getString("util.tileviewer.endpoint_base", "")));
 		return true;
 	}
@@ -1,6 +1,9 @@
 package me.cth451.paperframe.command;
 
 import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.command.base.PreparedCommandExecutor;
+import me.cth451.paperframe.task.HighlightSession;
+import me.cth451.paperframe.task.HighlightSessionManager;
 import me.cth451.paperframe.util.FrameFilter;
 import me.cth451.paperframe.util.HighlightOptions;
 import me.cth451.paperframe.util.getopt.ArgvParser;
@@ -8,11 +11,14 @@ import me.cth451.paperframe.util.getopt.ParameterRequiredException;
 import me.cth451.paperframe.util.getopt.PrintHelpException;
 import me.cth451.paperframe.util.getopt.UnixFlagSpec;
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.MapMeta;
+import org.bukkit.map.MapView;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -21,11 +27,9 @@ import java.util.List;
 import static me.cth451.paperframe.util.FrameFilter.*;
 
 /**
- * highlight the frames in range
+ * highlight the frames in range. Arguments are parsed off the main thread; sessions are toggled on the main thread.
  */
-public class FrameHighlight implements CommandExecutor {
-	private final PaperFramePlugin plugin;
-
+public class FrameHighlight extends PreparedCommandExecutor<FrameHighlight.Plan> {
 	private final static UnixFlagSpec[] arguments = {
 			/* Show hidden frames only */
 			HIDDEN.toFlagSpec(),
@@ -39,12 +43,27 @@ public class FrameHighlight implements CommandExecutor {
 			new UnixFlagSpec("radius", 'r', UnixFlagSpec.FlagType.PARAMETRIZE, "radius", Double::parseDouble),
 			/* Whether selection should be made from WorldEdit cuboid */
 			new UnixFlagSpec("use-we", 'w', UnixFlagSpec.FlagType.EXIST, "use-we"),
+			/* Whether frames should be made glow via packets instead of particle outlines */
+			new UnixFlagSpec("glow", 'g', UnixFlagSpec.FlagType.EXIST, "glow"),
+			/* Whether frames should be drawn onto the held map instead of particle outlines */
+			new UnixFlagSpec("map", 'm', UnixFlagSpec.FlagType.EXIST, "map"),
+			/* Print highlighting cost measurements instead of toggling */
+			new UnixFlagSpec("stats", null, UnixFlagSpec.FlagType.EXIST, "stats"),
 	};
 
 	private final static ArgvParser argvParser = new ArgvParser(Arrays.asList(arguments));
 
 	public FrameHighlight(PaperFramePlugin plugin) {
-		this.plugin = plugin;
+		super(plugin);
+	}
+
+	/**
+	 * Parsed request
+	 *
+	 * @param options highlight options, with the range still to be resolved against the configuration
+	 * @param radius  radius given with -r, or null to use the configured default
+	 */
+	record Plan(HighlightOptions options, @Nullable Double radius) {
 	}
 
 	/**
@@ -55,45 +74,62 @@ public class FrameHighlight implements CommandExecutor {
 	 * <li>-s = overlapping / stacked ones only</li>
 	 * <li>-e = empty frames only</li>
 	 * <li>-r N = highlight within radius N</li>
+	 * <li>-g = show glowing outlines instead of particles</li>
+	 * <li>-m = draw a minimap onto the held map instead of particles</li>
+	 * <li>--stats = print performance statistics of highlighting</li>
 	 * </ul>
 	 *
-	 * @param commandSender Source of the command
-	 * @param command       Command which was executed
-	 * @param argv0         Alias of the command which was used
-	 * @param argv1         Passed command arguments
-	 * @return whether the invocation is sound
+	 * @param player  player executing the command
+	 * @param command command which was executed
+	 * @param argv0   alias of the command which was used
+	 * @param argv1   passed command arguments
+	 * @return highlight options to toggle with and the requested radius, or null if the command ends here
 	 */
 	@Override
-	public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String argv0, @NotNull String[] argv1) {
-		if (!(commandSender instanceof Player player)) {
-			commandSender.sendMessage("This command can only be used by a player");
-			return false;
-		}
-
-		HighlightOptions options = new HighlightOptions(this.plugin.getConfig().getDouble(
-				"commands.framehighlight.default_radius", HighlightOptions.DEFAULT_RADIUS));
+	protected @Nullable Plan prepare(@NotNull Player player, @NotNull Command command, @NotNull String argv0,
+	                                 @NotNull String[] argv1) {
+		/* Range is resolved in apply - the configuration is main thread only */
+		HighlightOptions options = new HighlightOptions(HighlightOptions.DEFAULT_RADIUS);
 
 		HashMap<String, Object> parsed;
 		try {
 			parsed = argvParser.parse(List.of(argv1));
 		} catch (IllegalArgumentException | PrintHelpException | ParameterRequiredException e) {
 			player.sendMessage(ChatColor.YELLOW + e.getMessage());
-			player.sendMessage(ChatColor.YELLOW + command.getDescription());
-			player.sendMessage(command.getUsage());
-			return true;
+			sendUsage(player, command);
+			return null;
+		}
+
+		if ((boolean) parsed.get("stats")) {
+			this.plugin.getHighlightStats().report().forEach(line -> player.sendMessage(ChatColor.YELLOW + line));
+			return null;
 		}
 
-		if (parsed.containsKey("radius")) {
-			options.range = (double) parsed.get("radius");
+		if ((boolean) parsed.get("glow") && (boolean) parsed.get("map")) {
+			player.sendMessage(ChatColor.RED + "Must specify only one of -g or -m");
+			sendUsage(player, command);
+			return null;
 		}
 
 		if ((boolean) parsed.get("use-we")) {
 			if (!this.plugin.getDependencyManager().isWorldEditAvailable(player)) {
-				return true;
+				return null;
 			}
 			options.worldedit = true;
 		}
 
+		if ((boolean) parsed.get("glow")) {
+			if (!this.plugin.getDependencyManager().isBKCommonLibAvailable(player)) {
+				return null;
+			}
+			options.mode = HighlightOptions.Mode.GLOW;
+		}
+
+		/* The held map is checked on the main thread */
+		if ((boolean) parsed.get("map")) {
+			options.mode = HighlightOptions.Mode.MAP;
+		}
+
 		for (FrameFilter f : FrameFilter.values()) {
 			if (parsed.containsKey(f.toString())) {
 				if ((boolean) parsed.get(f.toString()))
@@ -103,30 +139,43 @@ public class FrameHighlight implements CommandExecutor {
 			}
 		}
 
+		return new Plan(options, (Double) parsed.get("radius"));
+	}
+
+	@Override
+	protected void apply(@NotNull Player player, @NotNull Plan plan) {
+		HighlightOptions options = plan.options();
+		options.range = plan.radius() != null
+				? plan.radius()
+				: this.plugin.getConfig().getDouble("commands.framehighlight.default_radius",
+				                                    HighlightOptions.DEFAULT_RADIUS);
 		double confMaxRadius = this.plugin.getConfig()
 		                                  .getDouble("commands.framehighlight.max_radius", HighlightOptions.MAX_RADIUS);
 		if (options.range > confMaxRadius) {
 			options.range = confMaxRadius;
 		}
 
-		boolean enabling;
-		synchronized (PaperFramePlugin.activeHighlightUsers) {
-			if (PaperFramePlugin.activeHighlightUsers.containsKey(player.getUniqueId())) {
-				PaperFramePlugin.activeHighlightUsers.remove(player.getUniqueId());
-				enabling = false;
-			} else {
-				PaperFramePlugin.activeHighlightUsers.put(player.getUniqueId(), options);
-				enabling = true;
-			}
+		/* Toggle - turning off needs nothing from the player */
+		HighlightSessionManager sessions = this.plugin.getHighlightSessions();
+		if (sessions.stop(player) != null) {
+			player.sendMessage(ChatColor.GREEN + "Item frame highlighting disabled");
+			return;
 		}
 
-		if (enabling) {
-			player.sendMessage(ChatColor.GREEN + options.toString());
-			this.plugin.startPlayerUpdate();
-		} else {
-			player.sendMessage(ChatColor.GREEN + "Item frame highlighting disabled");
+		MapView mapView = null;
+		if (options.mode == HighlightOptions.Mode.MAP) {
+			ItemStack held = player.getInventory().getItemInMainHand();
+			if (held.getType() != Material.FILLED_MAP || !(held.getItemMeta() instanceof MapMeta meta)
+					|| (mapView = meta.getMapView()) == null) {
+				player.sendMessage(ChatColor.RED + "Hold a map in your main hand to highlight onto it");
+				return;
+			}
 		}
 
-		return true;
+		HighlightSession session = sessions.start(player, options);
+		if (session != null && mapView != null) {
+			session.attachMap(mapView);
+		}
+		player.sendMessage(ChatColor.GREEN + options.toString());
 	}
 }
@@ -2,6 +2,8 @@ package me.cth451.paperframe.command;
 
 import com.destroystokyo.paper.block.TargetBlockInfo;
 import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.command.base.PreparedCommandExecutor;
+import me.cth451.paperframe.task.UndoManager;
 import me.cth451.paperframe.util.Targeting;
 import me.cth451.paperframe.util.getopt.ArgvParser;
 import me.cth451.paperframe.util.getopt.ParameterRequiredException;
@@ -14,8 +16,6 @@ import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.ItemFrame;
@@ -23,6 +23,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.MapMeta;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -41,20 +42,16 @@ import static me.cth451.paperframe.command.FrameUnmap.removeFramesTargetedBlockF
  *     <li>-p = new frames should be protected</li>
  *     <li>-a = append</li>
  * </ul>
+ * Removed and created frames are recorded for /frameundo.
  */
-public class FrameMapStack implements CommandExecutor {
-	/**
-	 * Ref to plugin instance itself
-	 */
-	private final PaperFramePlugin plugin;
-
+public class FrameMapStack extends PreparedCommandExecutor<FrameMapStack.Plan> {
 	/**
 	 * Constructor
 	 *
 	 * @param plugin ptr to plugin instance, mainly used for logger
 	 */
 	public FrameMapStack(PaperFramePlugin plugin) {
-		this.plugin = plugin;
+		super(plugin);
 	}
 
 	private final static UnixFlagSpec[] arguments = {
@@ -66,16 +63,22 @@ public class FrameMapStack implements CommandExecutor {
 
 	private final static ArgvParser argvParser = new ArgvParser(List.of(arguments));
 
+	/**
+	 * Parsed request
+	 *
+	 * @param argv0  alias of the command which was used
+	 * @param parsed parsed flags
+	 * @param ids    distinct map ids, in the order given
+	 */
+	record Plan(String argv0, HashMap<String, Object> parsed, List<Short> ids) {
+	}
 
 	@Override
-	public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String argv0, @NotNull String[] argv1p) {
-		if (!(commandSender instanceof Player player)) {
-			commandSender.sendMessage("This command can only be used by a player");
-			return false;
-		}
-
+	protected @Nullable Plan prepare(@NotNull Player player, @NotNull Command command, @NotNull String argv0,
+	                                 @NotNull String[] argv1p) {
 		if (argv1p.length == 0) {
-			return false;
+			sendUsage(player, command);
+			return null;
 		}
 
 		HashMap<String, Object> parsed;
@@ -84,65 +87,71 @@ public class FrameMapStack implements CommandExecutor {
 			parsed = argvParser.parse(List.of(argv1p), extraArgs);
 		} catch (PrintHelpException | ParameterRequiredException e) {
 			player.sendMessage(ChatColor.YELLOW + e.getMessage());
-			player.sendMessage(ChatColor.YELLOW + command.getDescription());
-			player.sendMessage(command.getUsage());
-			return true;
+			sendUsage(player, command);
+			return null;
 		}
 
-		final boolean useGlow = (Boolean) parsed.get("glow");
-		final boolean append = (Boolean) parsed.get("append");
-
 		List<Short> ids;
 		try {
-			ids = extraArgs.stream().map(Short::parseShort).toList();
+			ids = extraArgs.stream().map(Short::parseShort).distinct().toList();
 		} catch (NumberFormatException e) {
-			return false;
+			sendUsage(player, command);
+			return null;
 		}
+		return new Plan(argv0, parsed, ids);
+	}
+
+	@Override
+	protected void apply(@NotNull Player player, @NotNull Plan plan) {
+		final HashMap<String, Object> parsed = plan.parsed();
+		final boolean useGlow = (Boolean) parsed.get("glow");
+		final boolean append = (Boolean) parsed.get("append");
 
 		TargetBlockInfo targetInfo = player.getTargetBlockInfo(Targeting.SELECTION_RANGE,
 		                                                       TargetBlockInfo.FluidMode.NEVER);
 		if (targetInfo == null || targetInfo.getBlock().getType().isAir()) {
-			player.sendMessage("You need to be looking at a block surface to use /" + argv0 + ".");
-			return false;
+			player.sendMessage("You need to be looking at a block surface to use /" + plan.argv0() + ".");
+			return;
 		}
 
 		final Block targetBlock = targetInfo.getBlock();
 		final BlockFace face = targetInfo.getBlockFace();
 		final Location containingBlock = targetBlock.getRelative(face, 1).getLocation();
 
+		final UndoManager.Recording undo = this.plugin.getUndoManager().begin(player, player.getWorld(),
+		                                                                      "/" + plan.argv0());
 		if (!append) {
-			long removed = removeFramesTargetedBlockFace(player);
+			long removed = removeFramesTargetedBlockFace(player, undo);
 			if (removed > 0)
 				player.sendMessage(String.format("Removed %d item frames", removed));
 		}
 
-		final Player finalPlayer = player;
 		final BlockFace extruding = targetInfo.getBlockFace();
 		final EntityType frameType = useGlow ? EntityType.GLOW_ITEM_FRAME : EntityType.ITEM_FRAME;
 
 		/* Create new item frames */
 		long created =
-				ids.stream()
-				   .distinct()
-				   /* Make sure the map id exist on the server */
-				   .filter(id -> Bukkit.getMap(id) != null)
-				   /* Spawn the item frame and place map with specific id in the frame */
-				   .filter(id -> {
-					   Entity e = finalPlayer.getWorld().spawnEntity(containingBlock, frameType);
-					   ItemFrame f = (ItemFrame) e;
-					   ItemStack content = new ItemStack(Material.FILLED_MAP, 1);
-					   MapMeta meta = (MapMeta) content.getItemMeta();
-					   meta.setMapId(id);
-					   content.setItemMeta(meta);
-					   f.setItem(content);
-					   f.setFacingDirection(extruding, true);
-					   FrameProtect.setProtectedByPlayer(f, (Boolean) parsed.get("hidden"), player);
-					   FrameShowHide.setShowHideByPlayer(f, (Boolean) parsed.get("protected"), player);
-					   return true;
-				   })
-				   .count();
+				plan.ids().stream()
+				    /* Make sure the map id exist on the server */
+				    .filter(id -> Bukkit.getMap(id) != null)
+				    /* Spawn the item frame and place map with specific id in the frame */
+				    .filter(id -> {
+					    Entity e = player.getWorld().spawnEntity(containingBlock, frameType);
+					    ItemFrame f = (ItemFrame) e;
+					    ItemStack content = new ItemStack(Material.FILLED_MAP, 1);
+					    MapMeta meta = (MapMeta) content.getItemMeta();
+					    meta.setMapId(id);
+					    content.setItemMeta(meta);
+					    f.setItem(content);
+					    f.setFacingDirection(extruding, true);
+					    FrameProtect.setProtectedByPlayer(f, (Boolean) parsed.get("hidden"), player);
+					    FrameShowHide.setShowHideByPlayer(f, (Boolean) parsed.get("protected"), player);
+					    undo.created(f);
+					    return true;
+				    })
+				    .count();
+		undo.commit();
 
 		player.sendMessage(String.format("Created %d item frames", created));
-		return true;
 	}
 }
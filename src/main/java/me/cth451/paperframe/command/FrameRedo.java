@@ -0,0 +1,30 @@
+package me.cth451.paperframe.command;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Repeats the most recently undone frame operation of the issuing player, see {@link me.cth451.paperframe.task.UndoManager}
+ */
+public class FrameRedo implements CommandExecutor {
+	private final PaperFramePlugin plugin;
+
+	public FrameRedo(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	@Override
+	public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String argv0, @NotNull String[] argv1) {
+		if (!(commandSender instanceof Player player)) {
+			commandSender.sendMessage("This command can only be used by a player");
+			return false;
+		}
+
+		this.plugin.getUndoManager().redo(player);
+		return true;
+	}
+}
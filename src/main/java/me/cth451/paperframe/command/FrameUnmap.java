@@ -1,20 +1,27 @@
 package me.cth451.paperframe.command;
 
 import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.task.UndoManager;
+import me.cth451.paperframe.util.Drawing;
+import me.cth451.paperframe.util.OutlineMerger;
 import me.cth451.paperframe.util.Targeting;
 import me.cth451.paperframe.util.getopt.ArgvParser;
 import me.cth451.paperframe.util.getopt.ParameterRequiredException;
 import me.cth451.paperframe.util.getopt.PrintHelpException;
 import me.cth451.paperframe.util.getopt.UnixFlagSpec;
 import org.bukkit.ChatColor;
+import org.bukkit.Color;
+import org.bukkit.Particle;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -22,6 +29,8 @@ import static me.cth451.paperframe.util.Targeting.byTargetedStackedEntity;
 
 /**
  * Removes ALL item frames attached on the block surface under the cursor or with -w all frames within selection.
+ * Selections are removed through {@link me.cth451.paperframe.task.BulkJobManager}, spread over several ticks.
+ * With -n, frames are only counted. Removed frames are recorded for /frameundo.
  */
 public class FrameUnmap implements CommandExecutor {
 	/**
@@ -31,10 +40,14 @@ public class FrameUnmap implements CommandExecutor {
 
 	protected final static UnixFlagSpec[] arguments = {
 			new UnixFlagSpec("use-we", 'w', UnixFlagSpec.FlagType.EXIST, "use-we"),
+			new UnixFlagSpec("dry-run", 'n', UnixFlagSpec.FlagType.EXIST, "dry-run"),
 	};
 
 	protected final static ArgvParser argvParser = new ArgvParser(List.of(arguments));
 
+	/* Outline of removed frames */
+	private final static Particle.DustOptions REMOVED = new Particle.DustOptions(Color.RED, 1.0f);
+
 	public FrameUnmap(PaperFramePlugin plugin) {
 		this.plugin = plugin;
 	}
@@ -43,24 +56,32 @@ public class FrameUnmap implements CommandExecutor {
 	 * Remove all item frames hanging on the specific block and on the specific face.
 	 *
 	 * @param player the player to check
+	 * @param undo   recording to add removed frames to, or null
 	 * @return number of item frames removed
 	 */
-	public static long removeFramesTargetedBlockFace(@NotNull Player player) {
-		List<ItemFrame> filtered = Targeting.byAttachedBlockFace(player);
-		filtered.forEach(Entity::remove);
-		return filtered.size();
+	public static long removeFramesTargetedBlockFace(@NotNull Player player, @Nullable UndoManager.Recording undo) {
+		return remove(Targeting.byAttachedBlockFace(player), undo);
 	}
 
 	/**
 	 * Remove all item frames by targeted entity - the frames might be in the air and not attached to a block.
 	 *
 	 * @param player the player to check
+	 * @param undo   recording to add removed frames to, or null
 	 * @return number of item frames removed
 	 */
-	public static long removeFramesTargetedEntity(@NotNull Player player) {
-		List<ItemFrame> filtered = byTargetedStackedEntity(player);
-		filtered.forEach(Entity::remove);
-		return filtered.size();
+	public static long removeFramesTargetedEntity(@NotNull Player player, @Nullable UndoManager.Recording undo) {
+		return remove(byTargetedStackedEntity(player), undo);
+	}
+
+	private static long remove(@NotNull List<ItemFrame> frames, @Nullable UndoManager.Recording undo) {
+		for (ItemFrame frame : frames) {
+			if (undo != null) {
+				undo.removed(frame);
+			}
+			frame.remove();
+		}
+		return frames.size();
 	}
 
 	@Override
@@ -83,18 +104,51 @@ public class FrameUnmap implements CommandExecutor {
 			return true;
 		}
 
-		long removed = 0;
-		if ((boolean) parsed.get("use-we")) {
-			List<ItemFrame> targets = Targeting.byWorldEditCuboid(player);
-			if (targets != null) {
-				removed = targets.size();
-				targets.forEach(Entity::remove);
+		final boolean dryRun = (boolean) parsed.get("dry-run");
+		if (!(boolean) parsed.get("use-we")) {
+			long removed;
+			if (dryRun) {
+				removed = byTargetedStackedEntity(player).size();
+			} else {
+				UndoManager.Recording undo = this.plugin.getUndoManager().begin(player, player.getWorld(), "/" + argv0);
+				removed = removeFramesTargetedEntity(player, undo);
+				undo.commit();
 			}
-		} else {
-			removed = removeFramesTargetedEntity(player);
+			player.sendMessage(String.format(dryRun ? "Would remove %d item frames" : "Removed %d item frames",
+			                                 removed));
+			return true;
 		}
 
-		player.sendMessage(String.format("Removed %d item frames", removed));
+		List<ItemFrame> targets = Targeting.byWorldEditSelection(player);
+		if (targets == null) {
+			return true;
+		}
+
+		/* Faces are captured before removal, for a single outline of everything removed */
+		final List<OutlineMerger.Face> faces = new ArrayList<>();
+		final World world = targets.isEmpty() ? player.getWorld() : targets.get(0).getWorld();
+		final UndoManager.Recording undo = this.plugin.getUndoManager().begin(player, world, "/" + argv0 + " -w");
+		this.plugin.getBulkJobs().submit(player, "/" + argv0, targets, dryRun, (frame, dry) -> {
+			if (!dry) {
+				faces.add(OutlineMerger.Face.of(frame));
+				undo.removed(frame);
+				frame.remove();
+			}
+			return true;
+		}, job -> {
+			undo.commit();
+			if (job.dryRun) {
+				player.sendMessage(String.format("Would remove %d item frames", job.changed().size()));
+				return;
+			}
+			if (!faces.isEmpty()) {
+				Drawing.scheduleStickyMergedOutline(this.plugin, faces, world, REMOVED, 3, 10);
+			}
+			String prefix = job.isCancelled()
+					? String.format("Cancelled after %d of %d frames. ", job.done(), job.total())
+					: "";
+			player.sendMessage(prefix + String.format("Removed %d item frames", job.changed().size()));
+		});
 		return true;
 	}
 }
@@ -0,0 +1,99 @@
+package me.cth451.paperframe.command.base;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.logging.Level;
+
+/**
+ * A player command handled in two phases:
+ * <ol>
+ *     <li>{@link PreparedCommandExecutor#prepare} runs asynchronously: argument parsing, id expansion, metadata and
+ *     cache lookups and any validation that does not need the world,</li>
+ *     <li>{@link PreparedCommandExecutor#apply} runs on the main thread on the next tick with the prepared state:
+ *     targeting and entity changes only.</li>
+ * </ol>
+ * Heavy argument work thus stays off the tick. Prepare must not touch worlds, entities or other main thread only state.
+ * Sending chat messages to the player is fine from either phase.
+ *
+ * @param <T> state handed over from prepare to apply
+ */
+public abstract class PreparedCommandExecutor<T> implements CommandExecutor {
+	protected final PaperFramePlugin plugin;
+
+	/**
+	 * Default constructor
+	 *
+	 * @param plugin plugin instance
+	 */
+	protected PreparedCommandExecutor(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Asynchronous phase. Problems are reported to the player directly.
+	 *
+	 * @param player  player executing the command
+	 * @param command command which was executed
+	 * @param argv0   alias of the command which was used
+	 * @param argv1   passed command arguments
+	 * @return state for {@link PreparedCommandExecutor#apply}, or null if the command ends here
+	 */
+	protected abstract @Nullable T prepare(@NotNull Player player, @NotNull Command command, @NotNull String argv0,
+	                                       @NotNull String[] argv1);
+
+	/**
+	 * Main thread phase. Only called if the player is still online.
+	 *
+	 * @param player   player executing the command
+	 * @param prepared state returned by {@link PreparedCommandExecutor#prepare}
+	 */
+	protected abstract void apply(@NotNull Player player, @NotNull T prepared);
+
+	/**
+	 * Print the description and usage of a command, i.e. on invalid arguments
+	 *
+	 * @param player  player executing the command
+	 * @param command command which was executed
+	 */
+	protected static void sendUsage(@NotNull Player player, @NotNull Command command) {
+		player.sendMessage(ChatColor.YELLOW + command.getDescription());
+		player.sendMessage(command.getUsage());
+	}
+
+	@Override
+	public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String argv0,
+	                         @NotNull String[] argv1) {
+		if (!(sender instanceof Player player)) {
+			sender.sendMessage("This command can only be used by a player");
+			return false;
+		}
+
+		Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+			T prepared;
+			try {
+				prepared = prepare(player, command, argv0, argv1);
+			} catch (RuntimeException e) {
+				this.plugin.getLogger().log(Level.SEVERE, "Failed preparing /" + argv0, e);
+				player.sendMessage(ChatColor.RED + "Internal error occurred - please check server logs");
+				return;
+			}
+			if (prepared == null || !this.plugin.isEnabled()) {
+				return;
+			}
+			Bukkit.getScheduler().runTask(this.plugin, () -> {
+				if (player.isOnline()) {
+					apply(player, prepared);
+				}
+			});
+		});
+		return true;
+	}
+}
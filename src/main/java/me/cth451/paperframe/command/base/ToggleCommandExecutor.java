@@ -2,7 +2,11 @@ package me.cth451.paperframe.command.base;
 
 import com.destroystokyo.paper.event.server.AsyncTabCompleteEvent;
 import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.task.BulkJob;
+import me.cth451.paperframe.task.BulkJobManager;
+import me.cth451.paperframe.task.UndoManager;
 import me.cth451.paperframe.util.Drawing;
+import me.cth451.paperframe.util.OutlineMerger;
 import me.cth451.paperframe.util.Targeting;
 import me.cth451.paperframe.util.getopt.ArgvParser;
 import me.cth451.paperframe.util.getopt.ParameterRequiredException;
@@ -12,13 +16,14 @@ import org.bukkit.ChatColor;
 import org.bukkit.Color;
 import org.bukkit.Particle;
 import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static me.cth451.paperframe.util.Targeting.byTargetedEntity;
 
@@ -31,14 +36,19 @@ import static me.cth451.paperframe.util.Targeting.byTargetedEntity;
  * <p>
  * `-w` causes the command will act on all frames within WorldEdit selection range instead of the frame under the
  * cursor. WorldEdit must be active on the server. Otherwise, the command will fail with an error message in the chat.
+ * Changes are applied through {@link BulkJobManager}, so large selections are spread over several ticks.
+ * <p>
+ * `-n` only counts frames that would change. Otherwise changes are recorded for /frameundo, see {@link UndoManager}.
+ * <p>
+ * Arguments are parsed off the main thread, see {@link PreparedCommandExecutor}.
  */
-public abstract class ToggleCommandExecutor implements CommandExecutor, IAsyncTabCompleteExecutor {
-	protected final PaperFramePlugin plugin;
-
+public abstract class ToggleCommandExecutor extends PreparedCommandExecutor<ToggleCommandExecutor.Plan>
+		implements IAsyncTabCompleteExecutor {
 	protected final static UnixFlagSpec[] arguments = {
 			new UnixFlagSpec("on", '1', UnixFlagSpec.FlagType.EXIST, "on"),
 			new UnixFlagSpec("off", '0', UnixFlagSpec.FlagType.EXIST, "off"),
 			new UnixFlagSpec("use-we", 'w', UnixFlagSpec.FlagType.EXIST, "use-we"),
+			new UnixFlagSpec("dry-run", 'n', UnixFlagSpec.FlagType.EXIST, "dry-run"),
 	};
 
 	protected final static ArgvParser argvParser = new ArgvParser(List.of(arguments));
@@ -66,7 +76,18 @@ public abstract class ToggleCommandExecutor implements CommandExecutor, IAsyncTa
 	 * @param plugin plugin instance
 	 */
 	protected ToggleCommandExecutor(PaperFramePlugin plugin) {
-		this.plugin = plugin;
+		super(plugin);
+	}
+
+	/**
+	 * Parsed request
+	 *
+	 * @param argv0        alias of the command which was used
+	 * @param action       action specified by the user
+	 * @param useWorldEdit whether to act on the WorldEdit selection instead of the frame under the cursor
+	 * @param dryRun       whether to only count frames that would change
+	 */
+	protected record Plan(String argv0, Action action, boolean useWorldEdit, boolean dryRun) {
 	}
 
 	/**
@@ -92,9 +113,12 @@ public abstract class ToggleCommandExecutor implements CommandExecutor, IAsyncTa
 	 * @param frame  frame to change
 	 * @param action action specified by the player
 	 * @param player player executing the comand
-	 * @return whether the item frame is changed
+	 * @param dryRun whether to leave the frame as is
+	 * @param undo   recording of this command, null in a dry run
+	 * @return whether the item frame is changed, or would be changed in a dry run
 	 */
-	private boolean update(@NotNull ItemFrame frame, Action action, @NotNull Player player) {
+	private boolean update(@NotNull ItemFrame frame, Action action, @NotNull Player player, boolean dryRun,
+	                       @Nullable UndoManager.Recording undo) {
 		/* Desired state */
 		boolean desired;
 		if (action == Action.TOGGLE) {
@@ -108,13 +132,69 @@ public abstract class ToggleCommandExecutor implements CommandExecutor, IAsyncTa
 			}
 		}
 
+		if (dryRun) {
+			return true;
+		}
+		int mapBefore = UndoManager.mapId(frame);
+		int flagsBefore = UndoManager.flags(frame);
 		setter(frame, desired, player);
-
-		final Particle.DustOptions options = new Particle.DustOptions(desired ? Color.GREEN : Color.RED, 1.0f);
-		Drawing.scheduleStickyDraw(this.plugin, () -> Drawing.drawBoundingBox(frame, options), 3, 10);
+		this.plugin.getFrameIndex().touch(frame);
+		if (undo != null) {
+			undo.modified(frame, mapBefore, flagsBefore);
+		}
 		return true;
 	}
 
+	/**
+	 * Outline changed frames in green if the property is now on, red otherwise. Many frames are outlined as merged
+	 * walls instead of one box each.
+	 *
+	 * @param changed frames changed
+	 */
+	private void drawFeedback(@NotNull List<ItemFrame> changed) {
+		if (changed.isEmpty()) {
+			return;
+		}
+		if (changed.size() == 1) {
+			ItemFrame frame = changed.get(0);
+			final Particle.DustOptions options = new Particle.DustOptions(getter(frame) ? Color.GREEN : Color.RED, 1.0f);
+			Drawing.scheduleStickyDraw(this.plugin, () -> Drawing.drawBoundingBox(frame, options), 3, 10);
+			return;
+		}
+
+		Map<Boolean, List<OutlineMerger.Face>> byState =
+				changed.stream().collect(Collectors.partitioningBy(this::getter,
+				                                                   Collectors.mapping(OutlineMerger.Face::of,
+				                                                                      Collectors.toList())));
+		byState.forEach((state, faces) -> {
+			if (faces.isEmpty()) {
+				return;
+			}
+			Particle.DustOptions options = new Particle.DustOptions(state ? Color.GREEN : Color.RED, 1.0f);
+			Drawing.scheduleStickyMergedOutline(this.plugin, faces, changed.get(0).getWorld(), options, 3, 10);
+		});
+	}
+
+	/**
+	 * Tell the issuer what a finished or cancelled job has done, outlining all changed frames at once
+	 *
+	 * @param job    finished job
+	 * @param action action requested by the user
+	 */
+	private void reportJob(@NotNull BulkJob job, Action action) {
+		Player player = job.issuer;
+		if (job.dryRun) {
+			player.sendMessage(ChatColor.GREEN + String.format("Dry run: %d of %d frames would change.",
+			                                                   job.changed().size(), job.total()));
+			return;
+		}
+		drawFeedback(job.changed());
+		String prefix = job.isCancelled()
+				? String.format("Cancelled after %d of %d frames. ", job.done(), job.total())
+				: "";
+		player.sendMessage(ChatColor.GREEN + prefix + fmtStatusChanged(job.changed(), action));
+	}
+
 	/**
 	 * Generate a summary on actions performed
 	 *
@@ -125,61 +205,71 @@ public abstract class ToggleCommandExecutor implements CommandExecutor, IAsyncTa
 	protected abstract String fmtStatusChanged(@NotNull Collection<ItemFrame> changeset, Action action);
 
 	@Override
-	public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String argv0, @NotNull String[] argv1) {
-		if (!(commandSender instanceof Player player)) {
-			commandSender.sendMessage("This command can only be used by a player");
-			return false;
-		}
+	protected @Nullable Plan prepare(@NotNull Player player, @NotNull Command command, @NotNull String argv0,
+	                                 @NotNull String[] argv1) {
 		HashMap<String, Object> parsed;
 		try {
 			parsed = argvParser.parse(List.of(argv1));
 		} catch (IllegalArgumentException | PrintHelpException | ParameterRequiredException e) {
 			player.sendMessage(ChatColor.YELLOW + e.getMessage());
-			player.sendMessage(ChatColor.YELLOW + command.getDescription());
-			player.sendMessage(command.getUsage());
-			return true;
+			sendUsage(player, command);
+			return null;
 		}
 
+		/* Verify action */
+		final Action action;
+		if ((boolean) parsed.get("on") && (boolean) parsed.get("off")) {
+			player.sendMessage(ChatColor.RED + "Must specify only one of --on or --off");
+			sendUsage(player, command);
+			return null;
+		} else if ((boolean) parsed.get("on")) {
+			action = Action.ENABLE;
+		} else if ((boolean) parsed.get("off")) {
+			action = Action.DISABLE;
+		} else {
+			action = Action.TOGGLE;
+		}
+
+		return new Plan(argv0, action, (boolean) parsed.get("use-we"), (boolean) parsed.get("dry-run"));
+	}
+
+	@Override
+	protected void apply(@NotNull Player player, @NotNull Plan plan) {
 		List<ItemFrame> targets;
 
-		if ((boolean) parsed.get("use-we")) {
+		if (plan.useWorldEdit()) {
 			/* Call WorldEdit to fetch selection range */
-			targets = Targeting.byWorldEditCuboid(player);
+			targets = Targeting.byWorldEditSelection(player);
 			if (targets == null) {
-				return true;
+				return;
 			}
 			if (targets.isEmpty()) {
-				player.sendMessage("Can't find an item frame within selected cuboid");
-				return true;
+				player.sendMessage("Can't find an item frame within selected region");
+				return;
 			}
 		} else {
 			/* Check whether the player is looking at an item frame */
 			ItemFrame frame = byTargetedEntity(player);
 			if (frame == null) {
 				player.sendMessage("Can't find an item frame where you are looking at");
-				return true;
+				return;
 			}
 			targets = List.of(frame);
 		}
 
-		/* Verify action */
-		final Action action;
-		if ((boolean) parsed.get("on") && (boolean) parsed.get("off")) {
-			player.sendMessage(ChatColor.RED + "Must specify only one of --on or --off");
-			return false;
-		} else if ((boolean) parsed.get("on")) {
-			action = Action.ENABLE;
-		} else if ((boolean) parsed.get("off")) {
-			action = Action.DISABLE;
-		} else {
-			action = Action.TOGGLE;
-		}
-
-		List<ItemFrame> changed = targets.stream().filter(frame -> update(frame, action, player)).toList();
-
-		player.sendMessage(ChatColor.GREEN + fmtStatusChanged(changed, action));
-
-		return true;
+		final Action action = plan.action();
+		final String description = "/" + plan.argv0() + (plan.useWorldEdit() ? " -w" : "");
+		final UndoManager.Recording undo = plan.dryRun()
+				? null
+				: this.plugin.getUndoManager().begin(player, targets.get(0).getWorld(), description);
+		this.plugin.getBulkJobs().submit(player, description, targets, plan.dryRun(),
+		                                 (frame, dry) -> update(frame, action, player, dry, undo),
+		                                 job -> {
+			                                 if (undo != null) {
+				                                 undo.commit();
+			                                 }
+			                                 reportJob(job, action);
+		                                 });
 	}
 
 	@Override
@@ -0,0 +1,48 @@
+package me.cth451.paperframe.dependency;
+
+import com.bergerkiller.bukkit.common.utils.PacketUtil;
+import com.bergerkiller.bukkit.common.wrappers.DataWatcher;
+import com.bergerkiller.generated.net.minecraft.network.protocol.game.PacketPlayOutEntityMetadataHandle;
+import com.bergerkiller.generated.net.minecraft.world.entity.EntityHandle;
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Actual API calls into BKCommonLib. This class must not be instantiated when BKCommonLib plugin is missing on the
+ * server. Thus, this class is package-private, as access to these APIs must go through {@link DependencyManager}.
+ */
+class BKCommonLibLink implements IGlowPackets {
+	private final PaperFramePlugin plugin;
+
+	/**
+	 * Constructor
+	 *
+	 * @param plugin initializing plugin
+	 */
+	public BKCommonLibLink(@NotNull PaperFramePlugin plugin) {
+		this.plugin = plugin;
+		this.plugin.getLogger().info("BKCommonLib integration initialized.");
+	}
+
+	/**
+	 * Send entity flags of an entity with the glowing bit overridden
+	 *
+	 * @param viewer  player to receive the metadata
+	 * @param entity  entity to glow
+	 * @param glowing whether the glowing outline should be shown
+	 */
+	@Override
+	public void sendGlowing(@NotNull Player viewer, @NotNull Entity entity, boolean glowing) {
+		/* Start from the real flags so that other states (i.e. on fire) are preserved */
+		byte flags = EntityHandle.fromBukkit(entity).getDataWatcher().get(EntityHandle.DATA_FLAGS);
+		if (glowing) {
+			flags |= EntityHandle.DATA_FLAG_GLOWING;
+		}
+
+		DataWatcher metadata = new DataWatcher();
+		metadata.set(EntityHandle.DATA_FLAGS, flags);
+		PacketUtil.sendPacket(viewer, PacketPlayOutEntityMetadataHandle.createNew(entity.getEntityId(), metadata, true));
+	}
+}
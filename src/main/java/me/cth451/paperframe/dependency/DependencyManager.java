@@ -2,6 +2,7 @@ package me.cth451.paperframe.dependency;
 
 import me.cth451.paperframe.PaperFramePlugin;
 import org.bukkit.ChatColor;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -12,10 +13,11 @@ import java.util.List;
 /**
  * Tracks API calls into other soft dependencies.
  */
-public class DependencyManager implements IWorldEdit {
+public class DependencyManager implements IWorldEdit, IGlowPackets {
 
 	private final PaperFramePlugin plugin;
 	private IWorldEdit worldEditAPI = null;
+	private IGlowPackets glowPacketsAPI = null;
 
 	/**
 	 * Initialize and probe existence of any optional dependencies
@@ -28,12 +30,16 @@ public class DependencyManager implements IWorldEdit {
 		if (this.plugin.getServer().getPluginManager().getPlugin("WorldEdit") != null) {
 			worldEditAPI = new WorldEditLink(plugin);
 		}
+		/* Check BKCommonLib availability */
+		if (this.plugin.getServer().getPluginManager().getPlugin("BKCommonLib") != null) {
+			glowPacketsAPI = new BKCommonLibLink(plugin);
+		}
 	}
 
 	/**
 	 * Check whether WorldEdit has been found here. Other classes should call this function before calling
-	 * {@link DependencyManager#getCuboidSelection(Player)} and
-	 * {@link DependencyManager#getCuboidSelection(Player, boolean)}. If a player is specified, they will receive an
+	 * {@link DependencyManager#getSelection(Player)} and
+	 * {@link DependencyManager#getSelection(Player, boolean)}. If a player is specified, they will receive an
 	 * error message if WorldEdit is not present.
 	 *
 	 * @param player requesting player
@@ -51,26 +57,70 @@ public class DependencyManager implements IWorldEdit {
 	}
 
 	/**
-	 * Wrapper for {@link WorldEditLink#getCuboidSelection(Player)}
+	 * Check whether BKCommonLib has been found here. Other classes should call this function before calling
+	 * {@link DependencyManager#sendGlowing(Player, Entity, boolean)}. If a player is specified, they will receive an
+	 * error message if BKCommonLib is not present.
+	 *
+	 * @param player requesting player
+	 * @return whether BKCommonLib is functional and callable
+	 */
+	public boolean isBKCommonLibAvailable(@Nullable Player player) {
+		if (glowPacketsAPI == null) {
+			if (player != null) {
+				player.sendMessage(ChatColor.RED + "BKCommonLib is not found on this server. Cannot use `-g`.");
+			}
+			return false;
+		} else {
+			return true;
+		}
+	}
+
+	/**
+	 * Wrapper for {@link WorldEditLink#getSelection(Player)}
 	 *
 	 * @param player requesting player
 	 * @return null if API is not present or list of item frames
 	 */
 	@Override
-	public List<ItemFrame> getCuboidSelection(@NotNull Player player) {
+	public List<ItemFrame> getSelection(@NotNull Player player) {
 		if (worldEditAPI == null) return null;
-		return worldEditAPI.getCuboidSelection(player);
+		return worldEditAPI.getSelection(player);
 	}
 
 	/**
-	 * Wrapper for {@link WorldEditLink#getCuboidSelection(Player, boolean)}
+	 * Wrapper for {@link WorldEditLink#getSelection(Player, boolean)}
 	 *
 	 * @param player requesting player
 	 * @return null if API is not present or list of item frames
 	 */
 	@Override
-	public List<ItemFrame> getCuboidSelection(@NotNull Player player, boolean interactive) {
+	public List<ItemFrame> getSelection(@NotNull Player player, boolean interactive) {
 		if (worldEditAPI == null) return null;
-		return worldEditAPI.getCuboidSelection(player, interactive);
+		return worldEditAPI.getSelection(player, interactive);
+	}
+
+	/**
+	 * Wrapper for {@link WorldEditLink#getSelectionBounds(Player)}
+	 *
+	 * @param player requesting player
+	 * @return null if API is not present or the selection is incomplete, or selection bounds
+	 */
+	@Override
+	public @Nullable WorldEditSelection getSelectionBounds(@NotNull Player player) {
+		if (worldEditAPI == null) return null;
+		return worldEditAPI.getSelectionBounds(player);
+	}
+
+	/**
+	 * Wrapper for {@link BKCommonLibLink#sendGlowing(Player, Entity, boolean)}. Does nothing if BKCommonLib is absent.
+	 *
+	 * @param viewer  player to receive the metadata
+	 * @param entity  entity to glow
+	 * @param glowing whether the glowing outline should be shown
+	 */
+	@Override
+	public void sendGlowing(@NotNull Player viewer, @NotNull Entity entity, boolean glowing) {
+		if (glowPacketsAPI == null) return;
+		glowPacketsAPI.sendGlowing(viewer, entity, glowing);
 	}
 }
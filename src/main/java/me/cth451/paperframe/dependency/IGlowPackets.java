@@ -0,0 +1,20 @@
+package me.cth451.paperframe.dependency;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Required APIs that we need to implement from packet level primitives.
+ */
+public interface IGlowPackets {
+	/**
+	 * Make an entity appear glowing (or not) to one player only by sending it entity metadata. The actual entity is
+	 * not modified.
+	 *
+	 * @param viewer  player to receive the metadata
+	 * @param entity  entity to glow
+	 * @param glowing whether the glowing outline should be shown
+	 */
+	void sendGlowing(@NotNull Player viewer, @NotNull Entity entity, boolean glowing);
+}
@@ -2,27 +2,37 @@ package me.cth451.paperframe.dependency;
 
 import org.bukkit.entity.ItemFrame;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
 /**
- * Required APIs that we need to implement from WorldEdit primitives.
+ * Required APIs that we need to implement from WorldEdit primitives. Selections of any shape are supported: frames are
+ * looked up in the chunks overlapping the selection's bounding box, then tested against the exact shape.
  */
 public interface IWorldEdit {
 	/**
-	 * Get frames within a cuboid
+	 * Get frames within the selection
 	 *
 	 * @param player requesting player
-	 * @return list of item frames contained in the selection, or empty list if the selection is not a cube
+	 * @return list of item frames contained in the selection, or empty list if there is no complete selection
 	 */
-	List<ItemFrame> getCuboidSelection(@NotNull org.bukkit.entity.Player player);
+	List<ItemFrame> getSelection(@NotNull org.bukkit.entity.Player player);
 
 	/**
-	 * Get frames within a cuboid
+	 * Get frames within the selection
 	 *
 	 * @param player      requesting player
 	 * @param interactive whether the player should be prompted to make a selection
-	 * @return list of item frames contained in the selection, or empty list if the selection is not a cube
+	 * @return list of item frames contained in the selection, or empty list if there is no complete selection
 	 */
-	List<ItemFrame> getCuboidSelection(@NotNull org.bukkit.entity.Player player, boolean interactive);
+	List<ItemFrame> getSelection(@NotNull org.bukkit.entity.Player player, boolean interactive);
+
+	/**
+	 * Get the bounds and shape of the selection without looking up any frames
+	 *
+	 * @param player requesting player
+	 * @return world, block aligned bounding box and shape of the selection, or null if there is no complete selection
+	 */
+	@Nullable WorldEditSelection getSelectionBounds(@NotNull org.bukkit.entity.Player player);
 }
@@ -3,15 +3,25 @@ package me.cth451.paperframe.dependency;
 import com.sk89q.worldedit.IncompleteRegionException;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.ConvexPolyhedralRegion;
 import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
 import com.sk89q.worldedit.session.SessionManager;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
 import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.Location;
 import org.bukkit.entity.ItemFrame;
+import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Actual API calls into WorldEdit. This class must not be instantiated when WorldEdit plugin is missing on the server.
@@ -31,24 +41,39 @@ class WorldEditLink implements IWorldEdit {
 	}
 
 	/**
-	 * Get frames within a cuboid
+	 * Get frames within the selection
 	 *
 	 * @param player requesting player
-	 * @return list of item frames contained in the selection, or empty list if the selection is not a cube
+	 * @return list of item frames contained in the selection, or empty list if there is no complete selection
 	 */
-	public @NotNull List<ItemFrame> getCuboidSelection(@NotNull org.bukkit.entity.Player player) {
-		return getCuboidSelection(player, false);
+	public @NotNull List<ItemFrame> getSelection(@NotNull org.bukkit.entity.Player player) {
+		return getSelection(player, false);
 	}
 
 	/**
-	 * Get frames within a cuboid
+	 * Get frames within the selection
 	 *
 	 * @param player      requesting player
 	 * @param interactive whether the player should be prompted to make a selection
-	 * @return list of item frames contained in the selection, or empty list if the selection is not a cube
+	 * @return list of item frames contained in the selection, or empty list if there is no complete selection
 	 */
-	public @NotNull List<ItemFrame> getCuboidSelection(@NotNull org.bukkit.entity.Player player, boolean interactive) {
+	public @NotNull List<ItemFrame> getSelection(@NotNull org.bukkit.entity.Player player, boolean interactive) {
+		WorldEditSelection selection = getSelectionBounds(player);
+		if (selection == null) {
+			if (interactive)
+				BukkitAdapter.adapt(player).printError(TextComponent.of("Please make a region selection first."));
+			return new LinkedList<>();
+		}
+		return selection.frames(this.plugin.getFrameIndex());
+	}
 
+	/**
+	 * Get the bounds and shape of the selection without looking up any frames
+	 *
+	 * @param player requesting player
+	 * @return world, block aligned bounding box and shape of the selection, or null if there is no complete selection
+	 */
+	public @Nullable WorldEditSelection getSelectionBounds(@NotNull org.bukkit.entity.Player player) {
 		com.sk89q.worldedit.entity.Player actor = BukkitAdapter.adapt(player);
 		SessionManager manager = com.sk89q.worldedit.WorldEdit.getInstance().getSessionManager();
 		LocalSession localSession = manager.get(actor);
@@ -57,16 +82,49 @@ class WorldEditLink implements IWorldEdit {
 		try {
 			if (selectionWorld == null) throw new IncompleteRegionException();
 			region = localSession.getSelection(selectionWorld);
-			if (!(region instanceof CuboidRegion)) throw new IncompleteRegionException();
 		} catch (IncompleteRegionException ex) {
-			if (interactive)
-				actor.printError(TextComponent.of("Please make a cuboid region selection first."));
-			return new LinkedList<>();
+			return null;
 		}
 
-		return BukkitAdapter.adapt(selectionWorld).getEntitiesByClass(ItemFrame.class)
-		                    .stream()
-		                    .filter(e -> region.getBoundingBox().contains(BukkitAdapter.asBlockVector(e.getLocation())))
-		                    .toList();
+		BlockVector3 min = region.getMinimumPoint();
+		BlockVector3 max = region.getMaximumPoint();
+		BoundingBox box = new BoundingBox(min.getX(), min.getY(), min.getZ(),
+		                                  max.getX() + 1, max.getY() + 1, max.getZ() + 1);
+
+		/* Cuboids fill their bounding box, other shapes need the exact test - on a copy, as the session may edit it */
+		Supplier<Predicate<Location>> shape = null;
+		if (!(region instanceof CuboidRegion)) {
+			shape = () -> {
+				final com.sk89q.worldedit.regions.Region copy = region.clone();
+				return loc -> copy.contains(BlockVector3.at(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+			};
+		}
+		return new WorldEditSelection(BukkitAdapter.adapt(selectionWorld), box, shapeKey(region), shape);
+	}
+
+	/**
+	 * Describe the exact shape of a region by value. WorldEdit vectors are immutable values.
+	 *
+	 * @param region a region
+	 * @return region type and the points / radii defining its shape
+	 */
+	private static @NotNull WorldEditSelection.ShapeKey shapeKey(@NotNull com.sk89q.worldedit.regions.Region region) {
+		Object definition;
+		if (region instanceof CuboidRegion) {
+			/* Fully described by its bounding box */
+			definition = null;
+		} else if (region instanceof Polygonal2DRegion polygon) {
+			definition = List.copyOf(polygon.getPoints());
+		} else if (region instanceof EllipsoidRegion ellipsoid) {
+			definition = List.of(ellipsoid.getCenter(), ellipsoid.getRadius());
+		} else if (region instanceof CylinderRegion cylinder) {
+			definition = List.of(cylinder.getCenter(), cylinder.getRadius());
+		} else if (region instanceof ConvexPolyhedralRegion convex) {
+			definition = List.copyOf(convex.getVertices());
+		} else {
+			/* Unknown shape - a copy only equals itself, so such selections are never taken for one another */
+			definition = region.clone();
+		}
+		return new WorldEditSelection.ShapeKey(region.getClass(), definition);
 	}
 }
@@ -0,0 +1,60 @@
+package me.cth451.paperframe.dependency;
+
+import me.cth451.paperframe.util.FrameIndex;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A WorldEdit region selection, converted to Bukkit types
+ *
+ * @param world    world the selection was made in
+ * @param box      bounding box covering all selected blocks
+ * @param shapeKey exact shape, i.e. region type and defining points / radii - two selections with equal world, box
+ *                 and shape key select the same blocks
+ * @param shape    builds the exact test whether a location is within the selection, or null if the selection fills
+ *                 its bounding box. Only called when frames are looked up, so that comparing selections stays cheap.
+ */
+public record WorldEditSelection(@NotNull World world, @NotNull BoundingBox box, @NotNull ShapeKey shapeKey,
+                                 @Nullable Supplier<Predicate<Location>> shape) {
+	/**
+	 * Value describing the exact shape of a region
+	 *
+	 * @param type       region class
+	 * @param definition immutable value of the points / radii defining the shape, null if the bounding box alone
+	 *                   defines it
+	 */
+	public record ShapeKey(@NotNull Class<?> type, @Nullable Object definition) {
+	}
+
+	/**
+	 * @param other another selection, maybe null
+	 * @return whether both selections cover the same blocks
+	 */
+	public boolean sameBlocks(@Nullable WorldEditSelection other) {
+		return other != null && world.equals(other.world) && box.equals(other.box) && shapeKey.equals(other.shapeKey);
+	}
+
+	/**
+	 * Find frames within the selection. Only indexed chunks overlapping the bounding box are visited, and the exact
+	 * shape is only tested on frames within the bounding box.
+	 *
+	 * @param index frame index to query
+	 * @return list of item frames within the selection
+	 */
+	public @NotNull List<ItemFrame> frames(@NotNull FrameIndex index) {
+		List<ItemFrame> found = index.inBoundingBox(world, box);
+		if (shape != null) {
+			Predicate<Location> test = shape.get();
+			found.removeIf(frame -> !test.test(frame.getLocation()));
+		}
+		return found;
+	}
+}
@@ -0,0 +1,105 @@
+package me.cth451.paperframe.eventlistener;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.util.FrameIndex;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Keeps {@link FrameIndex} in sync with item frames loaded on the server.
+ * <p>
+ * Chunk entity loads / unloads, hanging placement / breakage and plain entity additions / removals (i.e. from plugins
+ * or commands) are all tracked. Duplicated notifications for the same frame are harmless. Player interactions that
+ * may change the content of a frame are forwarded as {@link FrameIndex#touch}.
+ */
+public class FrameIndexListener implements Listener {
+	private final FrameIndex index;
+
+	public FrameIndexListener(PaperFramePlugin plugin) {
+		this.index = plugin.getFrameIndex();
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onEntitiesLoad(EntitiesLoadEvent event) {
+		index.addAll(event.getEntities());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onEntitiesUnload(EntitiesUnloadEvent event) {
+		index.removeAll(event.getEntities());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onHangingPlace(HangingPlaceEvent event) {
+		if (event.getEntity() instanceof ItemFrame frame) {
+			index.add(frame);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onHangingBreak(HangingBreakEvent event) {
+		if (event.getEntity() instanceof ItemFrame frame) {
+			index.remove(frame);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onEntityAddToWorld(EntityAddToWorldEvent event) {
+		if (event.getEntity() instanceof ItemFrame frame) {
+			index.add(frame);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onEntityRemoveFromWorld(EntityRemoveFromWorldEvent event) {
+		if (event.getEntity() instanceof ItemFrame frame) {
+			index.remove(frame);
+		}
+	}
+
+	/**
+	 * Right clicks place or rotate items in the frame
+	 *
+	 * @param event right click event from player
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+		if (event.getRightClicked() instanceof ItemFrame frame) {
+			index.touch(frame);
+		}
+	}
+
+	/**
+	 * Hitting a frame drops its item
+	 *
+	 * @param event damage event
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onEntityDamage(EntityDamageEvent event) {
+		if (event.getEntity() instanceof ItemFrame frame) {
+			index.touch(frame);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onWorldLoad(WorldLoadEvent event) {
+		index.indexWorld(event.getWorld());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onWorldUnload(WorldUnloadEvent event) {
+		index.dropWorld(event.getWorld());
+	}
+}
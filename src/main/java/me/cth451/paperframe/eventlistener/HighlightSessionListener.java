@@ -0,0 +1,39 @@
+package me.cth451.paperframe.eventlistener;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.task.HighlightSession;
+import me.cth451.paperframe.task.HighlightSessionManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Cleans up highlight sessions of players leaving the server and resets sessions of players changing worlds
+ */
+public class HighlightSessionListener implements Listener {
+	private final HighlightSessionManager sessions;
+
+	public HighlightSessionListener(PaperFramePlugin plugin) {
+		this.sessions = plugin.getHighlightSessions();
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		sessions.stop(event.getPlayer());
+	}
+
+	/**
+	 * Frames of the previous world are gone from the client - forget them and start over in the new world
+	 *
+	 * @param event world change event
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+		HighlightSession session = sessions.get(event.getPlayer().getUniqueId());
+		if (session != null) {
+			session.reset();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.util.FrameIndex;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An operation on many frames, i.e. a -w toggle or unmap, run in slices by {@link BulkJobManager} so that large
+ * selections do not stall the server.
+ * <p>
+ * Frames are processed ordered by chunk, then by block, so that each slice touches as few chunks as possible. Frames
+ * that became invalid while the job was waiting are skipped.
+ * <p>
+ * Jobs may also run over indices instead of frames, i.e. to replay a {@link me.cth451.paperframe.util.FrameJournal}.
+ * <p>
+ * Must only be used on the main thread.
+ */
+public class BulkJob {
+	/**
+	 * Change applied to each frame
+	 */
+	@FunctionalInterface
+	public interface Operation {
+		/**
+		 * @param frame  frame to operate on
+		 * @param dryRun whether to only determine if the frame would change, without changing it
+		 * @return whether the frame is changed, or would be changed in a dry run
+		 */
+		boolean apply(@NotNull ItemFrame frame, boolean dryRun);
+	}
+
+	/**
+	 * Change applied to each index of a job not running over frames
+	 */
+	@FunctionalInterface
+	public interface IndexedOperation {
+		/**
+		 * @param index  index to operate on, from 0 to the total size of the job in order
+		 * @param dryRun whether to only determine if something would change, without changing it
+		 * @return whether something is changed, or would be changed in a dry run
+		 */
+		boolean apply(int index, boolean dryRun);
+	}
+
+	/* Frames processed between two checks of the deadline */
+	private static final int CHECK_INTERVAL = 64;
+
+	/**
+	 * Player who started this job
+	 */
+	public final Player issuer;
+
+	/**
+	 * Human readable name of the job, used in progress messages
+	 */
+	public final String description;
+
+	/**
+	 * Whether frames are only counted instead of changed
+	 */
+	public final boolean dryRun;
+
+	private final int total;
+	private final IndexedOperation operation;
+	private final Consumer<BulkJob> onFinish;
+
+	/* Index of the next frame to process */
+	private int cursor = 0;
+	private int changedCount = 0;
+	private final List<ItemFrame> changed = new ArrayList<>();
+	private boolean cancelled = false;
+
+	private record Keyed(long chunk, long block, ItemFrame frame) {
+	}
+
+	/**
+	 * @param issuer      player who started this job
+	 * @param description human readable name of the job
+	 * @param targets     frames to operate on
+	 * @param dryRun      whether frames are only counted instead of changed
+	 * @param operation   change applied to each frame
+	 * @param onFinish    called once the job has completed or was cancelled
+	 */
+	BulkJob(@NotNull Player issuer, @NotNull String description, @NotNull Collection<ItemFrame> targets,
+	        boolean dryRun, @NotNull Operation operation, @NotNull Consumer<BulkJob> onFinish) {
+		this.issuer = issuer;
+		this.description = description;
+		this.dryRun = dryRun;
+		this.onFinish = onFinish;
+
+		/* Compute keys once instead of on every comparison */
+		Keyed[] keyed = new Keyed[targets.size()];
+		int i = 0;
+		for (ItemFrame frame : targets) {
+			long block = FrameIndex.blockKey(frame.getLocation());
+			keyed[i++] = new Keyed(FrameIndex.chunkKeyOfBlock(block), block, frame);
+		}
+		Arrays.sort(keyed, Comparator.comparingLong(Keyed::chunk).thenComparingLong(Keyed::block));
+		final ItemFrame[] sorted = new ItemFrame[keyed.length];
+		for (i = 0; i < keyed.length; i++) {
+			sorted[i] = keyed[i].frame();
+		}
+		this.total = sorted.length;
+		this.operation = (index, dry) -> {
+			ItemFrame frame = sorted[index];
+			if (frame.isValid() && operation.apply(frame, dry)) {
+				changed.add(frame);
+				return true;
+			}
+			return false;
+		};
+	}
+
+	/**
+	 * @param issuer      player who started this job
+	 * @param description human readable name of the job
+	 * @param total       number of indices to operate on
+	 * @param operation   change applied to each index
+	 * @param onFinish    called once the job has completed or was cancelled
+	 */
+	BulkJob(@NotNull Player issuer, @NotNull String description, int total, @NotNull IndexedOperation operation,
+	        @NotNull Consumer<BulkJob> onFinish) {
+		this.issuer = issuer;
+		this.description = description;
+		this.dryRun = false;
+		this.total = total;
+		this.operation = operation;
+		this.onFinish = onFinish;
+	}
+
+	/**
+	 * @return number of frames this job operates on
+	 */
+	public int total() {
+		return total;
+	}
+
+	/**
+	 * @return number of frames processed so far
+	 */
+	public int done() {
+		return cursor;
+	}
+
+	/**
+	 * @return frames changed so far, or that would be changed in a dry run - always empty for indexed jobs
+	 */
+	public @NotNull List<ItemFrame> changed() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * @return number of frames or indices changed so far, or that would be changed in a dry run
+	 */
+	public int changedCount() {
+		return changedCount;
+	}
+
+	/**
+	 * @return whether this job was cancelled before processing all frames
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return whether all frames have been processed
+	 */
+	public boolean isComplete() {
+		return cursor >= total;
+	}
+
+	/**
+	 * Process frames until done or past the deadline. At least one frame is processed per call.
+	 *
+	 * @param deadline {@link System#nanoTime()} after which to stop
+	 * @return whether all frames have been processed
+	 */
+	boolean step(long deadline) {
+		int sinceCheck = 0;
+		while (cursor < total) {
+			if (operation.apply(cursor++, dryRun)) {
+				changedCount++;
+			}
+			if (++sinceCheck >= CHECK_INTERVAL) {
+				sinceCheck = 0;
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+		}
+		return isComplete();
+	}
+
+	/**
+	 * Stop processing and report what has been done so far
+	 */
+	void cancel() {
+		cancelled = true;
+		finish();
+	}
+
+	void finish() {
+		onFinish.accept(this);
+	}
+}
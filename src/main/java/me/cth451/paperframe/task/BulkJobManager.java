@@ -0,0 +1,170 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link BulkJob}s under a per-tick time budget, at most one job per player.
+ * <p>
+ * The first slice of a job runs right away, so small jobs complete within the issuing command. Larger jobs continue on
+ * a repeating task that runs only while jobs remain. Issuers are told about progress periodically and may cancel their
+ * job with /framecancel.
+ * <p>
+ * Must only be used on the main thread.
+ */
+public class BulkJobManager implements Runnable {
+	/**
+	 * Default time budget per tick in microseconds for all jobs together - maybe overridden from configuration
+	 */
+	public static final long DEFAULT_TICK_BUDGET_US = 5000;
+	/**
+	 * Default number of ticks between two progress messages - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_PROGRESS_INTERVAL_TICKS = 40;
+
+	private final PaperFramePlugin plugin;
+
+	/* Running jobs by issuer, in submission order */
+	private final LinkedHashMap<UUID, BulkJob> jobs = new LinkedHashMap<>();
+
+	/* Repeating task, null while idle */
+	private BukkitTask task = null;
+	private long tick = 0;
+
+	public BulkJobManager(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Start a job
+	 *
+	 * @param issuer      player starting the job
+	 * @param description human readable name of the job
+	 * @param targets     frames to operate on
+	 * @param dryRun      whether frames are only counted instead of changed
+	 * @param operation   change applied to each frame
+	 * @param onFinish    called once the job has completed or was cancelled, i.e. to report results
+	 * @return the job, or null if the issuer already has a job running
+	 */
+	public @Nullable BulkJob submit(@NotNull Player issuer, @NotNull String description,
+	                                @NotNull Collection<ItemFrame> targets, boolean dryRun,
+	                                @NotNull BulkJob.Operation operation, @NotNull Consumer<BulkJob> onFinish) {
+		if (isRunning(issuer)) {
+			issuer.sendMessage(ChatColor.RED + "Another operation of yours is still running. Use /framecancel to stop it.");
+			return null;
+		}
+		return start(new BulkJob(issuer, description, targets, dryRun, operation, onFinish));
+	}
+
+	/**
+	 * Start a job over indices instead of frames
+	 *
+	 * @param issuer      player starting the job
+	 * @param description human readable name of the job
+	 * @param total       number of indices to operate on
+	 * @param operation   change applied to each index
+	 * @param onFinish    called once the job has completed or was cancelled, i.e. to report results
+	 * @return the job, or null if the issuer already has a job running
+	 */
+	public @Nullable BulkJob submit(@NotNull Player issuer, @NotNull String description, int total,
+	                                @NotNull BulkJob.IndexedOperation operation, @NotNull Consumer<BulkJob> onFinish) {
+		if (isRunning(issuer)) {
+			issuer.sendMessage(ChatColor.RED + "Another operation of yours is still running. Use /framecancel to stop it.");
+			return null;
+		}
+		return start(new BulkJob(issuer, description, total, operation, onFinish));
+	}
+
+	/**
+	 * @param issuer a player
+	 * @return whether the player has a job running
+	 */
+	public boolean isRunning(@NotNull Player issuer) {
+		return jobs.containsKey(issuer.getUniqueId());
+	}
+
+	private @NotNull BulkJob start(@NotNull BulkJob job) {
+		Player issuer = job.issuer;
+		if (job.step(System.nanoTime() + budgetNanos())) {
+			job.finish();
+			return job;
+		}
+
+		jobs.put(issuer.getUniqueId(), job);
+		issuer.sendMessage(ChatColor.YELLOW + String.format("%s: %d frames, continuing in the background. "
+		                                                    + "Use /framecancel to stop.", job.description,
+		                                                    job.total()));
+		if (task == null) {
+			task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1, 1);
+		}
+		return job;
+	}
+
+	/**
+	 * Cancel the running job of a player. Changes made so far are kept and reported.
+	 *
+	 * @param issuer player who started the job
+	 * @return the cancelled job, or null if the player has none running
+	 */
+	public @Nullable BulkJob cancel(@NotNull Player issuer) {
+		BulkJob job = jobs.remove(issuer.getUniqueId());
+		if (job != null) {
+			job.cancel();
+		}
+		stopIfIdle();
+		return job;
+	}
+
+	/**
+	 * Cancel all jobs and stop the repeating task, i.e. when the plugin is disabled
+	 */
+	public void shutdown() {
+		for (BulkJob job : new ArrayList<>(jobs.values())) {
+			cancel(job.issuer);
+		}
+		stopIfIdle();
+	}
+
+	@Override
+	public void run() {
+		long deadline = System.nanoTime() + budgetNanos();
+		int progressInterval = Math.max(1, plugin.getConfig().getInt("commands.bulk.progress_interval_ticks",
+		                                                             DEFAULT_PROGRESS_INTERVAL_TICKS));
+		boolean report = ++tick % progressInterval == 0;
+
+		/* Oldest job first, every job makes progress each tick */
+		for (BulkJob job : new ArrayList<>(jobs.values())) {
+			if (job.step(deadline)) {
+				jobs.remove(job.issuer.getUniqueId());
+				job.finish();
+			} else if (report) {
+				job.issuer.sendMessage(ChatColor.YELLOW + String.format("%s: %d / %d frames", job.description,
+				                                                        job.done(), job.total()));
+			}
+		}
+		stopIfIdle();
+	}
+
+	private long budgetNanos() {
+		return 1000 * plugin.getConfig().getLong("commands.bulk.tick_budget_us", DEFAULT_TICK_BUDGET_US);
+	}
+
+	private void stopIfIdle() {
+		if (jobs.isEmpty() && task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+}
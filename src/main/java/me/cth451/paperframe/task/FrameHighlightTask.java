@@ -2,60 +2,144 @@ package me.cth451.paperframe.task;
 
 import me.cth451.paperframe.PaperFramePlugin;
 import me.cth451.paperframe.util.Drawing;
-import me.cth451.paperframe.util.HighlightOptions;
-import org.bukkit.Bukkit;
+import me.cth451.paperframe.util.ViewCuller;
 import org.bukkit.Color;
 import org.bukkit.Particle;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.ArrayDeque;
 
 /**
- * For all active frame highlight users, collect the set of nearby frames, draw particles on them.
+ * For all sessions in {@link HighlightSessionManager}, collect the set of nearby frames, draw particles on them or make
+ * them glow. Particles and glowing outlines are only sent to the player who requested highlighting.
+ * <p>
+ * This task runs every tick. Each session is due once per period, offset by its own phase so that sessions are spread
+ * across ticks instead of being handled in one burst. Due sessions are processed round-robin until the per-tick time
+ * budget runs out; the remaining ones carry over to the next tick.
+ * <p>
+ * Sessions in map mode only need their results kept up to date - the map renderer picks them up.
+ * <p>
+ * Particles are limited both per player and server-wide per tick. Outlines of frames outside the player's view cone,
+ * and optionally of frames hidden behind blocks, are skipped when drawing and do not count towards the limits.
  */
 public class FrameHighlightTask implements Runnable {
 	private final PaperFramePlugin plugin;
 	public static final Particle.DustOptions option = new Particle.DustOptions(Color.WHITE, 1.0f);
 
+	/**
+	 * Default number of ticks between two updates of the same session - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_PERIOD = 13;
+	/**
+	 * Default time budget per tick in microseconds - maybe overridden from configuration
+	 */
+	public static final long DEFAULT_TICK_BUDGET_US = 2000;
+	/**
+	 * Default number of particles all players may receive per tick - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_MAX_PARTICLES_PER_TICK = 10000;
+	/**
+	 * Default number of particles one player may receive per update - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_MAX_PARTICLES_PER_PLAYER = 2000;
+
+	/* Ticks elapsed since this task started */
+	private long tick = 0;
+
+	/* Sessions that are due but have not been processed yet, in processing order */
+	private final ArrayDeque<HighlightSession> due = new ArrayDeque<>();
+
+	/* Culling configuration, read once per tick */
+	private double coneAngle;
+	private boolean occlusion;
+	private int occlusionCacheTicks;
+
 	public FrameHighlightTask(PaperFramePlugin plugin) {
 		this.plugin = plugin;
 	}
 
 	@Override
 	public void run() {
-		/* Need to use hash set to ensure duplicate frames are not added */
-		HashSet<ItemFrame> frames = new HashSet<>();
-
-		synchronized (PaperFramePlugin.activeHighlightUsers) {
-			for (Map.Entry<UUID, HighlightOptions> entry : PaperFramePlugin.activeHighlightUsers.entrySet()) {
-				UUID playerID = entry.getKey();
-				HighlightOptions options = entry.getValue();
-				double range = options.range;
-
-				Player player = Bukkit.getPlayer(playerID);
-				// Just in case that a player has left
-				if (player == null) {
-					PaperFramePlugin.activeHighlightUsers.remove(playerID);
-					continue;
-				}
-
-				List<ItemFrame> nearby = options.source(player);
-				frames.addAll(nearby.stream()
-				                    .filter(options)
-				                    .toList());
+		long start = System.nanoTime();
+		int period = Math.max(1, this.plugin.getConfig()
+		                                    .getInt("commands.framehighlight.update_period", DEFAULT_PERIOD));
+		long budgetNanos = 1000 * this.plugin.getConfig()
+		                                     .getLong("commands.framehighlight.tick_budget_us",
+		                                              DEFAULT_TICK_BUDGET_US);
+		long deadline = System.nanoTime() + budgetNanos;
+		int particleBudget = this.plugin.getConfig().getInt("commands.framehighlight.max_particles_per_tick",
+		                                                    DEFAULT_MAX_PARTICLES_PER_TICK);
+		int playerParticleBudget = this.plugin.getConfig().getInt("commands.framehighlight.max_particles_per_player",
+		                                                          DEFAULT_MAX_PARTICLES_PER_PLAYER);
+		coneAngle = this.plugin.getConfig().getDouble("commands.framehighlight.view_cone_angle",
+		                                              ViewCuller.DEFAULT_VIEW_CONE_ANGLE);
+		occlusion = this.plugin.getConfig().getBoolean("commands.framehighlight.occlusion_culling",
+		                                               ViewCuller.DEFAULT_OCCLUSION_CULLING);
+		occlusionCacheTicks = this.plugin.getConfig().getInt("commands.framehighlight.occlusion_cache_ticks",
+		                                                     ViewCuller.DEFAULT_OCCLUSION_CACHE_TICKS);
+
+		HighlightSessionManager sessions = this.plugin.getHighlightSessions();
+
+		/* Queue sessions whose phase comes up in this tick */
+		for (HighlightSession session : sessions.sessions()) {
+			if ((tick + session.phase) % period == 0 && !session.queued) {
+				session.queued = true;
+				due.addLast(session);
+			}
+		}
+		tick++;
+
+		/* Always make progress on at least one session, then stay within budget */
+		boolean first = true;
+		while (!due.isEmpty() && (first || System.nanoTime() < deadline)) {
+			HighlightSession session = due.pollFirst();
+			session.queued = false;
+			Player player = session.player;
+			if (sessions.get(player.getUniqueId()) != session) {
+				/* Turned off while waiting */
+				continue;
+			}
+
+			// Just in case that a player has left without a quit event
+			if (!player.isOnline()) {
+				sessions.stop(player);
+				continue;
 			}
 
-			if (PaperFramePlugin.activeHighlightUsers.isEmpty()) {
-				// Stop background update when no players are requesting service
-				this.plugin.stopPlayerUpdate();
+			particleBudget -= update(player, session, Math.min(particleBudget, playerParticleBudget));
+			first = false;
+		}
+
+		this.plugin.getHighlightStats().record(HighlightStats.Metric.RUN_TIME, (System.nanoTime() - start) / 1000);
+	}
+
+	/**
+	 * Present highlighted frames of one session to its player
+	 *
+	 * @param player         player owning the session
+	 * @param session        highlight session
+	 * @param particleBudget maximum number of particles to send - nearest frames are drawn first
+	 * @return number of particles sent
+	 */
+	private int update(Player player, HighlightSession session, int particleBudget) {
+		long start = System.nanoTime();
+		session.refresh(player, this.plugin);
+		int particles = 0;
+		switch (session.options.mode) {
+			case GLOW -> session.updateGlow(player, this.plugin.getDependencyManager());
+			case PARTICLES -> {
+				session.culler().update(player, coneAngle, occlusion, occlusionCacheTicks);
+				particles = session.drawList().draw(Drawing.ParticleSink.of(player), option, particleBudget,
+				                                    session.culler());
+			}
+			/* Results are pushed to the map renderer as they are published */
+			case MAP -> {
 			}
 		}
 
-		frames.forEach((frame) -> Drawing.drawBoundingBox(frame, option));
+		HighlightStats stats = this.plugin.getHighlightStats();
+		stats.record(HighlightStats.Metric.SESSION_TIME, (System.nanoTime() - start) / 1000);
+		stats.record(HighlightStats.Metric.PARTICLES, particles);
+		return particles;
 	}
 }
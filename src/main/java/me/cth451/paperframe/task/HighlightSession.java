@@ -0,0 +1,394 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.dependency.WorldEditSelection;
+import me.cth451.paperframe.dependency.IGlowPackets;
+import me.cth451.paperframe.util.DrawList;
+import me.cth451.paperframe.util.FrameIndex;
+import me.cth451.paperframe.util.FrameSnapshot;
+import me.cth451.paperframe.util.HighlightMapRenderer;
+import me.cth451.paperframe.util.HighlightOptions;
+import me.cth451.paperframe.util.ViewCuller;
+import me.cth451.paperframe.util.WireframeTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapView;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * State of one player's /framehighlight. The filtered set of frames is cached and only recomputed when:
+ * <ul>
+ *     <li>the player moves into another block or world,</li>
+ *     <li>a frame in range is spawned, removed or changes state - as tracked by {@link FrameIndex} chunk versions.</li>
+ * </ul>
+ * WorldEdit based sessions additionally keep the filter results for their selection, which are only resolved again when
+ * the selection changes or a frame within is spawned, removed or changes state.
+ * <p>
+ * Recomputation runs in three stages:
+ * <ol>
+ *     <li>main thread: capture a {@link FrameSnapshot} of every candidate frame,</li>
+ *     <li>async: apply filters on the snapshots and generate particle geometry for the player's position,</li>
+ *     <li>main thread: publish the resulting {@link DrawList} and matched frames.</li>
+ * </ol>
+ * Until a recomputation finishes, the previous results keep being presented. Capture and filtering of range based
+ * sessions go through {@link SharedHighlightCache} so that nearby players with equal options share the work.
+ * <p>
+ * In MAP mode, results are drawn onto a map held by the player instead, see {@link HighlightMapRenderer}.
+ * <p>
+ * Geometry is ordered from the nearest frame to the farthest so that budget-limited drawing favors nearby frames.
+ * Level of detail drops with distance: full detail up to {@link HighlightSession#DEFAULT_LOD_FULL_DISTANCE}, sparser
+ * particles further away and only corners beyond {@link HighlightSession#DEFAULT_LOD_CORNERS_DISTANCE}.
+ */
+public class HighlightSession {
+	/**
+	 * Player owning this session
+	 */
+	public final Player player;
+
+	/**
+	 * Options specified by the player
+	 */
+	public final HighlightOptions options;
+
+	/**
+	 * Offset in ticks at which this session is updated within each period of {@link FrameHighlightTask}
+	 */
+	public final int phase;
+
+	/* Consecutive sessions get consecutive phases so that they spread over the period */
+	private static int nextPhase = 0;
+
+	/* Whether this session is waiting in the due queue of FrameHighlightTask - only accessed from the main thread */
+	boolean queued = false;
+
+	/* Particle spacing along outline edges at full detail, and right before dropping to corners only */
+	private static final double SPACING = 0.5;
+	private static final double SPACING_COARSE = 1.0;
+
+	/**
+	 * Distance up to which outlines are drawn in full detail - maybe overridden from configuration
+	 */
+	public static final double DEFAULT_LOD_FULL_DISTANCE = 8;
+	/**
+	 * Distance beyond which only corners are drawn - maybe overridden from configuration
+	 */
+	public static final double DEFAULT_LOD_CORNERS_DISTANCE = 24;
+
+	/* Key the current results were computed for - region and world are those of the selection in WorldEdit mode */
+	private boolean valid = false;
+	private UUID cachedWorld = null;
+	private long cachedBlock = 0;
+	private long cachedVersion = 0;
+	private BoundingBox cachedRegion = null;
+	private WorldEditSelection cachedSelection = null;
+
+	/* Filter results for the WorldEdit selection described by the key above */
+	private CompletableFuture<SharedHighlightCache.Result> selectionResult = null;
+
+	/* Latest published results - only accessed from the main thread */
+	private DrawList drawList = DrawList.EMPTY;
+	private Set<ItemFrame> matched = Collections.emptySet();
+
+	/* Whether a recomputation is in flight */
+	private boolean pending = false;
+	/* Bumped on invalidation so that results of outdated recomputations are dropped */
+	private int generation = 0;
+
+	/* Frames made glowing for the player in GLOW mode */
+	private final Set<ItemFrame> glowing = new HashSet<>();
+
+	/* View cone and line of sight checks for drawing outlines */
+	private final ViewCuller culler = new ViewCuller();
+
+	/* Map drawn onto in MAP mode, null if none is attached */
+	private MapView mapView = null;
+	private HighlightMapRenderer mapRenderer = null;
+
+	public HighlightSession(@NotNull Player player, @NotNull HighlightOptions options) {
+		this.player = player;
+		this.options = options;
+		this.phase = nextPhase++ & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Drop cached results, forcing a recomputation on next refresh
+	 */
+	public void invalidate() {
+		this.valid = false;
+		this.selectionResult = null;
+		this.generation++;
+	}
+
+	/**
+	 * Forget all results and glowing frames, i.e. after the player moved to another world where none of them exist
+	 */
+	public void reset() {
+		invalidate();
+		this.drawList = DrawList.EMPTY;
+		this.matched = Collections.emptySet();
+		this.glowing.clear();
+		if (mapRenderer != null) {
+			mapRenderer.update(null, Collections.emptyList());
+		}
+	}
+
+	/**
+	 * Draw results onto a map from now on, i.e. the one held by the player when starting MAP mode
+	 *
+	 * @param map map to draw onto
+	 */
+	public void attachMap(@NotNull MapView map) {
+		detachMap();
+		this.mapView = map;
+		this.mapRenderer = new HighlightMapRenderer(player.getUniqueId());
+		map.addRenderer(mapRenderer);
+		/* Results may already be there if the map is attached late */
+		invalidate();
+	}
+
+	/**
+	 * Stop drawing onto the attached map, restoring it for the player
+	 */
+	public void detachMap() {
+		if (mapView != null) {
+			mapView.removeRenderer(mapRenderer);
+		}
+		mapView = null;
+		mapRenderer = null;
+	}
+
+	/**
+	 * @return particle positions outlining matched frames, as of the latest finished recomputation
+	 */
+	public @NotNull DrawList drawList() {
+		return drawList;
+	}
+
+	/**
+	 * @return culling state of this session, to be passed to {@link DrawList#draw} as group filter
+	 */
+	public @NotNull ViewCuller culler() {
+		return culler;
+	}
+
+	/**
+	 * @return frames that passed all filters, as of the latest finished recomputation
+	 */
+	public @NotNull Set<ItemFrame> matched() {
+		return matched;
+	}
+
+	/**
+	 * Start recomputing highlighted frames if the cached results are stale. Must be called on the main thread.
+	 *
+	 * @param player player owning this session
+	 * @param plugin plugin instance
+	 */
+	public void refresh(@NotNull Player player, @NotNull PaperFramePlugin plugin) {
+		if (pending) {
+			return;
+		}
+
+		FrameIndex index = plugin.getFrameIndex();
+		long block = FrameIndex.blockKey(player.getLocation());
+		CompletableFuture<SharedHighlightCache.Result> source;
+		BoundingBox region;
+
+		if (!options.worldedit) {
+			UUID world = player.getWorld().getUID();
+			if (valid && world.equals(cachedWorld) && block == cachedBlock
+					&& index.version(player.getWorld(), cachedRegion) == cachedVersion) {
+				return;
+			}
+
+			cachedWorld = world;
+			cachedBlock = block;
+			cachedRegion = options.region(player);
+			cachedVersion = index.version(player.getWorld(), cachedRegion);
+
+			/* Stages 1 and 2 - capture and filtering are shared with sessions nearby, narrow down to own region */
+			source = plugin.getSharedHighlightCache().lookup(player.getLocation(), options);
+			region = cachedRegion;
+		} else {
+			WorldEditSelection selection = plugin.getDependencyManager().isWorldEditAvailable(null)
+					? plugin.getDependencyManager().getSelectionBounds(player)
+					: null;
+			UUID world = selection == null ? null : selection.world().getUID();
+			BoundingBox box = selection == null ? null : selection.box();
+			long version = selection == null ? 0 : index.version(selection.world(), box);
+			/* Reshaping a selection may keep its bounding box - compare the shape too */
+			boolean sameSelection = selectionResult != null && version == cachedVersion
+					&& (selection == null ? cachedSelection == null : selection.sameBlocks(cachedSelection));
+
+			if (valid && sameSelection && block == cachedBlock) {
+				return;
+			}
+
+			cachedBlock = block;
+			if (!sameSelection) {
+				/* Stages 1 and 2 - resolve the selection again only when it or the frames within have changed */
+				cachedWorld = world;
+				cachedRegion = box;
+				cachedSelection = selection;
+				cachedVersion = version;
+				selectionResult = plugin.getSharedHighlightCache().filter(
+						selection == null ? Collections.emptyList() : selection.frames(index), options);
+			}
+			/* Otherwise only geometry needs to follow the player */
+			source = selectionResult;
+			region = null;
+		}
+		valid = true;
+
+		boolean outlines = options.mode == HighlightOptions.Mode.PARTICLES;
+		final BoundingBox area = cachedRegion;
+		Location eye = player.getEyeLocation();
+		final double eyeX = eye.getX();
+		final double eyeY = eye.getY();
+		final double eyeZ = eye.getZ();
+		final double lodFull = plugin.getConfig().getDouble("commands.framehighlight.lod_full_distance",
+		                                                    DEFAULT_LOD_FULL_DISTANCE);
+		final double lodCorners = Math.max(lodFull, plugin.getConfig().getDouble(
+				"commands.framehighlight.lod_corners_distance", DEFAULT_LOD_CORNERS_DISTANCE));
+
+		pending = true;
+		final int jobGeneration = generation;
+		source.thenAcceptAsync(result -> {
+			List<FrameSnapshot> passed = region == null
+					? result.passed()
+					: result.passed().stream().filter(s -> region.contains(s.x(), s.y(), s.z())).toList();
+			DrawList geometry = outlines ? geometry(passed, eyeX, eyeY, eyeZ, lodFull, lodCorners) : DrawList.EMPTY;
+			/* Stage 3 */
+			publish(plugin, geometry, area, result.candidates(), passed, result.frames(), jobGeneration);
+		}, task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task)).exceptionally(e -> {
+			fail(plugin, e);
+			return null;
+		});
+	}
+
+	/**
+	 * A recomputation failed in filtering or geometry - log it and let the next refresh start over instead of waiting
+	 * for results that never arrive
+	 */
+	private void fail(PaperFramePlugin plugin, Throwable e) {
+		if (!plugin.isEnabled()) {
+			return;
+		}
+		plugin.getLogger().log(Level.WARNING, "Frame highlight update failed for " + player.getName(), e);
+		Bukkit.getScheduler().runTask(plugin, () -> {
+			pending = false;
+			valid = false;
+			selectionResult = null;
+		});
+	}
+
+	/**
+	 * Generate outlines of frames, nearest first, with level of detail decreasing with distance
+	 */
+	private static DrawList geometry(List<FrameSnapshot> passed, double eyeX, double eyeY, double eyeZ,
+	                                 double lodFull, double lodCorners) {
+		DrawList geometry = new DrawList(passed.size() * 20);
+		passed.stream()
+		      .sorted(Comparator.comparingDouble(s -> distanceSquared(s, eyeX, eyeY, eyeZ)))
+		      .forEachOrdered(s -> {
+			      double distance = Math.sqrt(distanceSquared(s, eyeX, eyeY, eyeZ));
+			      geometry.beginGroup(s.entityId(), (s.minX() + s.maxX()) / 2, (s.minY() + s.maxY()) / 2,
+			                          (s.minZ() + s.maxZ()) / 2);
+			      if (distance >= lodCorners) {
+				      geometry.addBoxCorners(s.minX(), s.minY(), s.minZ(), s.maxX(), s.maxY(), s.maxZ());
+			      } else {
+				      double spacing = distance <= lodFull
+						      ? SPACING
+						      : SPACING + (SPACING_COARSE - SPACING) * (distance - lodFull) / (lodCorners - lodFull);
+				      if (spacing == SPACING) {
+					      WireframeTemplate.of(s.maxX() - s.minX(), s.maxY() - s.minY(), s.maxZ() - s.minZ(), SPACING)
+					                       .appendTo(geometry, s.minX(), s.minY(), s.minZ());
+				      } else {
+					      geometry.addBox(s.minX(), s.minY(), s.minZ(), s.maxX(), s.maxY(), s.maxZ(), spacing);
+				      }
+			      }
+		      });
+		return geometry;
+	}
+
+	/**
+	 * Stage 3 - hand results of a recomputation over to the main thread
+	 */
+	private void publish(PaperFramePlugin plugin, DrawList geometry, BoundingBox area, int candidates,
+	                     List<FrameSnapshot> passed, Map<Integer, ItemFrame> byEntityId, int jobGeneration) {
+		if (!plugin.isEnabled()) {
+			return;
+		}
+
+		Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, () -> {
+			pending = false;
+			if (jobGeneration != generation) {
+				return;
+			}
+			drawList = geometry;
+			Set<ItemFrame> frames = new HashSet<>();
+			for (FrameSnapshot s : passed) {
+				ItemFrame frame = byEntityId.get(s.entityId());
+				if (frame != null) {
+					frames.add(frame);
+				}
+			}
+			matched = frames;
+			if (mapRenderer != null) {
+				mapRenderer.update(area, passed);
+			}
+			plugin.getHighlightStats().record(HighlightStats.Metric.CANDIDATES, candidates);
+			plugin.getHighlightStats().record(HighlightStats.Metric.PASSED, passed.size());
+		});
+	}
+
+	private static double distanceSquared(FrameSnapshot s, double x, double y, double z) {
+		double dx = s.x() - x;
+		double dy = s.y() - y;
+		double dz = s.z() - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Synchronize glowing outlines with the matched frame set. Metadata is only sent for frames entering or leaving
+	 * the set.
+	 *
+	 * @param player  player owning this session
+	 * @param packets packet API
+	 */
+	public void updateGlow(@NotNull Player player, @NotNull IGlowPackets packets) {
+		Iterator<ItemFrame> itr = glowing.iterator();
+		while (itr.hasNext()) {
+			ItemFrame frame = itr.next();
+			if (!matched.contains(frame)) {
+				if (frame.isValid()) {
+					packets.sendGlowing(player, frame, false);
+				}
+				itr.remove();
+			}
+		}
+		for (ItemFrame frame : matched) {
+			if (glowing.add(frame)) {
+				packets.sendGlowing(player, frame, true);
+			}
+		}
+	}
+
+	/**
+	 * Remove all glowing outlines sent by this session, i.e. when highlighting is turned off
+	 *
+	 * @param player  player owning this session
+	 * @param packets packet API
+	 */
+	public void clearGlow(@NotNull Player player, @NotNull IGlowPackets packets) {
+		glowing.stream().filter(ItemFrame::isValid).forEach(frame -> packets.sendGlowing(player, frame, false));
+		glowing.clear();
+	}
+}
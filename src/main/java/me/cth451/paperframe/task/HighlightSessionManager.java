@@ -0,0 +1,110 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.util.HighlightOptions;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of active /framehighlight sessions and of the repeating {@link FrameHighlightTask} serving them.
+ * <p>
+ * The task is started when the first session is added and cancelled as soon as the last one is removed. Sessions are
+ * removed when turned off, when their player quits (see
+ * {@link me.cth451.paperframe.eventlistener.HighlightSessionListener}) and when the plugin is disabled.
+ * <p>
+ * Sessions may be looked up from any thread. Starting and stopping sessions must happen on the main thread.
+ */
+public class HighlightSessionManager {
+	private final PaperFramePlugin plugin;
+	private final ConcurrentHashMap<UUID, HighlightSession> sessions = new ConcurrentHashMap<>();
+
+	/* Repeating highlight task, null while not running */
+	private BukkitTask task = null;
+
+	public HighlightSessionManager(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * @param playerId player unique id
+	 * @return the player's active session, or null if the player is not highlighting
+	 */
+	public @Nullable HighlightSession get(@NotNull UUID playerId) {
+		return sessions.get(playerId);
+	}
+
+	/**
+	 * @return live view of all active sessions - safe to iterate while sessions are added or removed
+	 */
+	public @NotNull Collection<HighlightSession> sessions() {
+		return sessions.values();
+	}
+
+	/**
+	 * Start highlighting for a player
+	 *
+	 * @param player  player requesting highlighting
+	 * @param options highlight options
+	 * @return the new session, or null if the player already has one
+	 */
+	public @Nullable HighlightSession start(@NotNull Player player, @NotNull HighlightOptions options) {
+		HighlightSession session = new HighlightSession(player, options);
+		if (sessions.putIfAbsent(player.getUniqueId(), session) != null) {
+			return null;
+		}
+		if (task == null) {
+			task = Bukkit.getScheduler().runTaskTimer(plugin, new FrameHighlightTask(plugin), 0, 1);
+			plugin.getLogger().info("Frame Highlight Task started");
+		}
+		return session;
+	}
+
+	/**
+	 * Stop highlighting for a player, removing glowing outlines if the player is still online and restoring the map
+	 * drawn onto
+	 *
+	 * @param player player to stop highlighting for
+	 * @return the removed session, or null if the player was not highlighting
+	 */
+	public @Nullable HighlightSession stop(@NotNull Player player) {
+		HighlightSession session = sessions.remove(player.getUniqueId());
+		if (session == null) {
+			return null;
+		}
+		if (player.isOnline()) {
+			session.clearGlow(player, plugin.getDependencyManager());
+		}
+		session.detachMap();
+		if (sessions.isEmpty()) {
+			stopTask();
+		}
+		return session;
+	}
+
+	/**
+	 * Stop all sessions and the highlight task, i.e. when the plugin is disabled
+	 */
+	public void shutdown() {
+		for (HighlightSession session : sessions.values()) {
+			stop(session.player);
+		}
+		stopTask();
+	}
+
+	private void stopTask() {
+		if (task == null) {
+			return;
+		}
+		task.cancel();
+		task = null;
+		plugin.getSharedHighlightCache().clear();
+		plugin.getLogger().info("Frame Highlight Task stopped");
+	}
+}
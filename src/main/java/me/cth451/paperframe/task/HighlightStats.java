@@ -0,0 +1,111 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.util.RollingSeries;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling measurements of /framehighlight cost, kept over the last {@link HighlightStats#WINDOW_MINUTES} minutes, or
+ * less under heavy load once the sample rings are full - reports include the span actually covered.
+ * Available to other plugins via {@link me.cth451.paperframe.PaperFramePlugin#getHighlightStats()}.
+ */
+public class HighlightStats {
+	/**
+	 * Quantities being measured
+	 */
+	public enum Metric {
+		/**
+		 * Wall time of one run of {@link FrameHighlightTask}, in microseconds
+		 */
+		RUN_TIME("task run time", "us", false),
+		/**
+		 * Wall time spent on one session update on the main thread, in microseconds
+		 */
+		SESSION_TIME("session update time", "us", true),
+		/**
+		 * Candidate frames captured and filtered per recomputation
+		 */
+		CANDIDATES("candidates scanned", "frames", true),
+		/**
+		 * Frames that passed all filters per recomputation
+		 */
+		PASSED("frames passed", "frames", true),
+		/**
+		 * Particles sent per session update
+		 */
+		PARTICLES("particles emitted", "particles", true),
+		;
+
+		public final String description;
+		public final String unit;
+		/* Recorded once per session update instead of once per tick */
+		final boolean perSession;
+
+		Metric(String description, String unit, boolean perSession) {
+			this.description = description;
+			this.unit = unit;
+			this.perSession = perSession;
+		}
+	}
+
+	/**
+	 * Length of the window percentiles are computed over
+	 */
+	public static final int WINDOW_MINUTES = 5;
+
+	/* Enough for a run every tick over the window */
+	private static final int CAPACITY = 20 * 60 * WINDOW_MINUTES;
+
+	/*
+	 * Per session metrics grow with the number of highlighting players: this covers the full window for about 100
+	 * players at the default update period. Beyond that, reports state the shorter span actually covered.
+	 */
+	private static final int SESSION_CAPACITY = 8 * CAPACITY;
+
+	private final EnumMap<Metric, RollingSeries> series = new EnumMap<>(Metric.class);
+
+	public HighlightStats() {
+		for (Metric metric : Metric.values()) {
+			series.put(metric, new RollingSeries(metric.perSession ? SESSION_CAPACITY : CAPACITY,
+			                                     TimeUnit.MINUTES.toNanos(WINDOW_MINUTES)));
+		}
+	}
+
+	/**
+	 * Record one sample
+	 *
+	 * @param metric measured quantity
+	 * @param value  sample value
+	 */
+	public void record(@NotNull Metric metric, long value) {
+		series.get(metric).record(value);
+	}
+
+	/**
+	 * @param metric measured quantity
+	 * @return percentiles of the quantity within the window
+	 */
+	public @NotNull RollingSeries.Percentiles percentiles(@NotNull Metric metric) {
+		return series.get(metric).percentiles();
+	}
+
+	/**
+	 * @return human readable summary, one line per metric
+	 */
+	public @NotNull List<String> report() {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format("Frame highlight stats over up to the last %d minutes (p50 / p95 / p99 / max):",
+		                        WINDOW_MINUTES));
+		for (Metric metric : Metric.values()) {
+			RollingSeries.Percentiles p = percentiles(metric);
+			lines.add(String.format("%s: %d / %d / %d / %d %s (%d samples over %ds)", metric.description, p.p50(),
+			                        p.p95(), p.p99(), p.max(), metric.unit, p.count(),
+			                        TimeUnit.NANOSECONDS.toSeconds(p.spanNanos())));
+		}
+		return lines;
+	}
+}
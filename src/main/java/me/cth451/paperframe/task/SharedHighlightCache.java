@@ -0,0 +1,150 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.util.FrameFilter;
+import me.cth451.paperframe.util.FrameFilterSet;
+import me.cth451.paperframe.util.FrameIndex;
+import me.cth451.paperframe.util.FrameSnapshot;
+import me.cth451.paperframe.util.HighlightOptions;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Filter results shared between highlight sessions whose {@link HighlightOptions} have the same filters and range.
+ * <p>
+ * Space is divided into cubic cells of {@link SharedHighlightCache#CELL_SIZE} blocks. All sessions whose player stands
+ * in the same cell query one common region - the cell expanded by the highlight range - so that candidate capture and
+ * filtering are done once for all of them. Each session then only keeps the frames within its own region.
+ * <p>
+ * Results stay valid as long as the {@link FrameIndex} version of the common region is unchanged. Entries not used for
+ * {@link SharedHighlightCache#EXPIRY_TICKS} ticks are dropped, failed ones on next lookup. Must only be accessed from
+ * the main thread.
+ */
+public class SharedHighlightCache {
+	/**
+	 * Frames that passed all filters within a common region
+	 *
+	 * @param candidates number of candidate frames filtered
+	 * @param passed     snapshots of frames that passed
+	 * @param frames     frames that passed by entity id - only to be accessed on the main thread
+	 */
+	public record Result(int candidates, @NotNull List<FrameSnapshot> passed, @NotNull Map<Integer, ItemFrame> frames) {
+	}
+
+	/**
+	 * Edge length of cells in blocks
+	 */
+	public static final int CELL_SIZE = 8;
+	private static final int CELL_BITS = 3;
+
+	/**
+	 * Number of ticks unused entries are kept for
+	 */
+	public static final int EXPIRY_TICKS = 200;
+
+	/* Player bounding boxes reach up to this far from the cell containing the player's location */
+	private static final double PLAYER_MARGIN = 2;
+
+	/* Built from copies, as sessions may still change their options */
+	private record Key(Set<FrameFilter> filters, double range, UUID world, long cell) {
+	}
+
+	private static class Entry {
+		long version;
+		int lastUsed;
+		CompletableFuture<Result> result;
+	}
+
+	private final PaperFramePlugin plugin;
+	private final HashMap<Key, Entry> entries = new HashMap<>();
+
+	public SharedHighlightCache(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Obtain filtered frames around a location, starting a computation if no valid result is cached. Sessions must
+	 * still narrow the result down to their own region.
+	 *
+	 * @param location location of the player
+	 * @param options  highlight options - must not be WorldEdit based
+	 * @return future completed off the main thread with filter results for the common region
+	 */
+	public @NotNull CompletableFuture<Result> lookup(@NotNull Location location, @NotNull HighlightOptions options) {
+		World world = location.getWorld();
+		FrameIndex index = plugin.getFrameIndex();
+		int cellX = location.getBlockX() >> CELL_BITS;
+		int cellY = location.getBlockY() >> CELL_BITS;
+		int cellZ = location.getBlockZ() >> CELL_BITS;
+		Key key = new Key(Set.copyOf(options.filters), options.range, world.getUID(),
+		                  FrameIndex.blockKey(cellX, cellY, cellZ));
+		BoundingBox region = new BoundingBox(cellX * CELL_SIZE, cellY * CELL_SIZE, cellZ * CELL_SIZE,
+		                                     (cellX + 1) * CELL_SIZE, (cellY + 1) * CELL_SIZE, (cellZ + 1) * CELL_SIZE)
+				.expand(options.range + PLAYER_MARGIN);
+		long version = index.version(world, region);
+		int now = Bukkit.getCurrentTick();
+
+		Entry entry = entries.get(key);
+		/* Failed computations are retried rather than served */
+		if (entry != null && entry.version == version && !entry.result.isCompletedExceptionally()) {
+			entry.lastUsed = now;
+			return entry.result;
+		}
+
+		prune(now);
+		entry = new Entry();
+		entry.version = version;
+		entry.lastUsed = now;
+		entry.result = filter(index.inBoundingBox(world, region), options);
+		entries.put(key, entry);
+		return entry.result;
+	}
+
+	/**
+	 * Drop all cached results
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Capture and filter candidates without caching, i.e. for selections that cannot be shared. Must be called on the
+	 * main thread.
+	 *
+	 * @param candidates frames to filter
+	 * @param options    highlight options
+	 * @return future completed off the main thread with filter results
+	 */
+	public @NotNull CompletableFuture<Result> filter(@NotNull List<ItemFrame> candidates,
+	                                                 @NotNull HighlightOptions options) {
+		/* Immutable, unlike the options, so it is safe to use off the main thread */
+		FrameFilterSet filters = options.compiled();
+		List<FrameSnapshot> snapshots = FrameSnapshot.capture(candidates, filters.contains(FrameFilter.STACKED));
+		HashMap<Integer, ItemFrame> byEntityId = new HashMap<>();
+		candidates.forEach(frame -> byEntityId.put(frame.getEntityId(), frame));
+
+		CompletableFuture<Result> result = new CompletableFuture<>();
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			try {
+				List<FrameSnapshot> passed = snapshots.stream().filter(filters::test).toList();
+				HashMap<Integer, ItemFrame> frames = new HashMap<>();
+				passed.forEach(s -> frames.put(s.entityId(), byEntityId.get(s.entityId())));
+				result.complete(new Result(snapshots.size(), passed, Collections.unmodifiableMap(frames)));
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private void prune(int now) {
+		entries.values().removeIf(entry -> now - entry.lastUsed > EXPIRY_TICKS);
+	}
+}
@@ -0,0 +1,143 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * Single repeating task serving all sticky draws, i.e. outlines that are redrawn a few times so that they stay visible
+ * for a while.
+ * <p>
+ * Entries are kept in a timer wheel of {@link StickyDrawLoop#WHEEL_SIZE} slots, one per tick. Every tick only the
+ * current slot is visited; entries due further out than one revolution wait for the remaining number of rounds. The
+ * task runs only while there are entries and is cancelled on plugin disable via {@link StickyDrawLoop#shutdown()}, after
+ * which draws are ignored - i.e. feedback of operations cancelled while the plugin disables.
+ * <p>
+ * Must only be used on the main thread.
+ */
+public class StickyDrawLoop implements Runnable {
+	/**
+	 * Number of slots in the wheel
+	 */
+	public static final int WHEEL_SIZE = 64;
+
+	private static class Entry {
+		final Runnable drawCall;
+		final long intervalTicks;
+		int remaining;
+		/* Full revolutions to wait before this entry is due */
+		long rounds;
+
+		Entry(Runnable drawCall, int repeatFor, long intervalTicks) {
+			this.drawCall = drawCall;
+			this.remaining = repeatFor;
+			this.intervalTicks = Math.max(1, intervalTicks);
+		}
+	}
+
+	private final PaperFramePlugin plugin;
+
+	@SuppressWarnings("unchecked")
+	private final ArrayList<Entry>[] wheel = new ArrayList[WHEEL_SIZE];
+	/* Swapped with the slot being processed so that entries rescheduled into it wait a full revolution */
+	private ArrayList<Entry> spare = new ArrayList<>();
+
+	/* Next tick to process */
+	private long tick = 0;
+	private int entries = 0;
+
+	/* Repeating task, null while idle */
+	private BukkitTask task = null;
+
+	/* Set once shut down - the plugin is disabling and may not schedule tasks any more */
+	private boolean closed = false;
+
+	public StickyDrawLoop(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			wheel[i] = new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Draw something now and a number of times after. Ignored once shut down.
+	 *
+	 * @param drawCall      drawing call
+	 * @param repeatFor     number of occurrences to draw
+	 * @param intervalTicks interval between two draw events in ticks
+	 */
+	public void add(@NotNull Runnable drawCall, int repeatFor, long intervalTicks) {
+		if (repeatFor <= 0 || closed) {
+			return;
+		}
+		schedule(new Entry(drawCall, repeatFor, intervalTicks), 0);
+		if (task == null) {
+			task = Bukkit.getScheduler().runTaskTimer(plugin, this, 0, 1);
+		}
+	}
+
+	/**
+	 * Drop all pending draws, stop the repeating task and ignore further draws
+	 */
+	public void shutdown() {
+		closed = true;
+		for (ArrayList<Entry> slot : wheel) {
+			slot.clear();
+		}
+		entries = 0;
+		stop();
+	}
+
+	@Override
+	public void run() {
+		long now = tick++;
+		int index = (int) (now % WHEEL_SIZE);
+		ArrayList<Entry> due = wheel[index];
+		wheel[index] = spare;
+
+		for (Entry entry : due) {
+			if (entry.rounds > 0) {
+				entry.rounds--;
+				wheel[index].add(entry);
+				continue;
+			}
+			entries--;
+			try {
+				entry.drawCall.run();
+			} catch (RuntimeException e) {
+				/* Keep serving other entries, as separately scheduled tasks would */
+				plugin.getLogger().log(Level.WARNING, "Sticky draw failed", e);
+			}
+			if (--entry.remaining > 0) {
+				schedule(entry, entry.intervalTicks - 1);
+			}
+		}
+
+		due.clear();
+		spare = due;
+		if (entries == 0) {
+			stop();
+		}
+	}
+
+	/**
+	 * @param entry entry to add
+	 * @param delay ticks after the next tick to process
+	 */
+	private void schedule(Entry entry, long delay) {
+		entry.rounds = delay / WHEEL_SIZE;
+		wheel[(int) ((tick + delay) % WHEEL_SIZE)].add(entry);
+		entries++;
+	}
+
+	private void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+}
@@ -0,0 +1,516 @@
+package me.cth451.paperframe.task;
+
+import me.cth451.paperframe.PaperFramePlugin;
+import me.cth451.paperframe.command.FrameProtect;
+import me.cth451.paperframe.command.FrameShowHide;
+import me.cth451.paperframe.util.Drawing;
+import me.cth451.paperframe.util.FrameIndex;
+import me.cth451.paperframe.util.FrameJournal;
+import me.cth451.paperframe.util.FrameProperties;
+import me.cth451.paperframe.util.OutlineMerger;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.MapMeta;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Per player undo / redo history of frame operations.
+ * <p>
+ * Commands open a {@link Recording}, report each frame they create, remove or modify and commit it once done. Changes
+ * are kept in a {@link FrameJournal}; journals of large operations are written to the plugin data folder and dropped
+ * from memory. Undo and redo replay a journal backwards or forwards through {@link BulkJobManager}.
+ * <p>
+ * Replaying only touches frames still in the state the journal left them in. Frames changed since, or in chunks that
+ * are not loaded, are skipped. Items other than maps are not recorded: undoing a change that replaced one leaves the
+ * frame empty.
+ * <p>
+ * Must only be used on the main thread.
+ */
+public class UndoManager {
+	/**
+	 * Default number of operations kept per player - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 16;
+	/**
+	 * Default number of frame changes above which a journal is kept on disk - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_SPILL_RECORDS = 4096;
+
+	/* Flags a frame must agree on to be replayed - other items are not restored, so they are not required either */
+	private static final int MATCHED_FLAGS = FrameJournal.FLAG_FIXED | FrameJournal.FLAG_INVISIBLE;
+
+	/* Outline of frames touched by undo / redo */
+	private static final Particle.DustOptions REPLAYED = new Particle.DustOptions(Color.AQUA, 1.0f);
+
+	/**
+	 * One recorded operation
+	 */
+	private static final class Entry {
+		final UUID world;
+		final String description;
+		/* In memory changes, null once written to file */
+		FrameJournal journal;
+		File file = null;
+		boolean discarded = false;
+
+		Entry(UUID world, String description, FrameJournal journal) {
+			this.world = world;
+			this.description = description;
+			this.journal = journal;
+		}
+	}
+
+	/**
+	 * Changes of one operation in progress
+	 */
+	public class Recording {
+		private final Player player;
+		private final World world;
+		private final String description;
+		private final FrameJournal journal = new FrameJournal();
+		private boolean committed = false;
+
+		private Recording(Player player, World world, String description) {
+			this.player = player;
+			this.world = world;
+			this.description = description;
+		}
+
+		/**
+		 * Record a frame that was just spawned
+		 *
+		 * @param frame new frame
+		 */
+		public void created(@NotNull ItemFrame frame) {
+			add(FrameJournal.Kind.CREATE, frame, FrameJournal.NO_MAP, 0, mapId(frame), flags(frame));
+		}
+
+		/**
+		 * Record a frame about to be removed
+		 *
+		 * @param frame frame, still in its final state
+		 */
+		public void removed(@NotNull ItemFrame frame) {
+			add(FrameJournal.Kind.REMOVE, frame, mapId(frame), flags(frame), FrameJournal.NO_MAP, 0);
+		}
+
+		/**
+		 * Record a frame that was just changed
+		 *
+		 * @param frame       changed frame
+		 * @param mapBefore   {@link UndoManager#mapId(ItemFrame)} before the change
+		 * @param flagsBefore {@link UndoManager#flags(ItemFrame)} before the change
+		 */
+		public void modified(@NotNull ItemFrame frame, int mapBefore, int flagsBefore) {
+			add(FrameJournal.Kind.MODIFY, frame, mapBefore, flagsBefore, mapId(frame), flags(frame));
+		}
+
+		private void add(FrameJournal.Kind kind, ItemFrame frame, int mapBefore, int flagsBefore, int mapAfter,
+		                 int flagsAfter) {
+			journal.add(kind, FrameIndex.blockKey(frame.getLocation()), frame.getFacing(), isGlow(frame),
+			            mapBefore, flagsBefore, mapAfter, flagsAfter);
+		}
+
+		/**
+		 * Make the recorded changes undoable. Nothing happens if no change was recorded.
+		 */
+		public void commit() {
+			if (committed || journal.size() == 0) {
+				return;
+			}
+			committed = true;
+			UUID issuer = player.getUniqueId();
+			/* A new operation invalidates what could be redone */
+			redos.getOrDefault(issuer, new ArrayDeque<>()).forEach(UndoManager.this::discard);
+			redos.remove(issuer);
+			push(undos, issuer, new Entry(world.getUID(), description, journal));
+		}
+	}
+
+	private final PaperFramePlugin plugin;
+
+	private final HashMap<UUID, ArrayDeque<Entry>> undos = new HashMap<>();
+	private final HashMap<UUID, ArrayDeque<Entry>> redos = new HashMap<>();
+
+	/* Players whose undo / redo is being loaded or replayed */
+	private final HashSet<UUID> busy = new HashSet<>();
+
+	/* Source of spill file names */
+	private long spillSeq = 0;
+
+	/* Set once shut down - operations finishing afterwards are not recorded */
+	private boolean closed = false;
+
+	public UndoManager(PaperFramePlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Start recording an operation
+	 *
+	 * @param player      player performing the operation
+	 * @param world       world the operation takes place in
+	 * @param description human readable name of the operation, i.e. the command line
+	 * @return an empty recording
+	 */
+	public @NotNull Recording begin(@NotNull Player player, @NotNull World world, @NotNull String description) {
+		return new Recording(player, world, description);
+	}
+
+	/**
+	 * @param frame a frame
+	 * @return id of the map in the frame or {@link FrameJournal#NO_MAP}
+	 */
+	public static int mapId(@NotNull ItemFrame frame) {
+		ItemStack item = frame.getItem();
+		if (item.getType() == Material.FILLED_MAP && item.getItemMeta() instanceof MapMeta meta && meta.hasMapId()) {
+			return meta.getMapId();
+		}
+		return FrameJournal.NO_MAP;
+	}
+
+	/**
+	 * @param frame a frame
+	 * @return state flags of the frame as stored in a {@link FrameJournal}
+	 */
+	public static int flags(@NotNull ItemFrame frame) {
+		int flags = 0;
+		if (FrameProperties.getProtected(frame)) {
+			flags |= FrameJournal.FLAG_FIXED;
+		}
+		if (FrameProperties.getHidden(frame)) {
+			flags |= FrameJournal.FLAG_INVISIBLE;
+		}
+		if (!frame.getItem().getType().isAir() && mapId(frame) == FrameJournal.NO_MAP) {
+			flags |= FrameJournal.FLAG_OTHER_ITEM;
+		}
+		return flags;
+	}
+
+	private static boolean isGlow(@NotNull ItemFrame frame) {
+		return frame.getType() == EntityType.GLOW_ITEM_FRAME;
+	}
+
+	/**
+	 * Revert the most recent operation of a player
+	 *
+	 * @param player player
+	 */
+	public void undo(@NotNull Player player) {
+		step(player, true);
+	}
+
+	/**
+	 * Repeat the most recently reverted operation of a player
+	 *
+	 * @param player player
+	 */
+	public void redo(@NotNull Player player) {
+		step(player, false);
+	}
+
+	/**
+	 * Forget all history and stop recording, i.e. when the plugin is disabled
+	 */
+	public void shutdown() {
+		closed = true;
+		purge();
+	}
+
+	/**
+	 * Forget all history and remove journals written to disk
+	 */
+	public void purge() {
+		undos.clear();
+		redos.clear();
+		busy.clear();
+		File[] files = spillFolder().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					plugin.getLogger().warning("Failed deleting undo journal " + file);
+				}
+			}
+		}
+	}
+
+	private File spillFolder() {
+		return new File(plugin.getDataFolder(), "journal");
+	}
+
+	private void step(@NotNull Player player, boolean undo) {
+		UUID issuer = player.getUniqueId();
+		if (busy.contains(issuer) || plugin.getBulkJobs().isRunning(player)) {
+			player.sendMessage(ChatColor.RED + "Another operation of yours is still running. Use /framecancel to stop it.");
+			return;
+		}
+		ArrayDeque<Entry> source = (undo ? undos : redos).get(issuer);
+		Entry entry = source == null ? null : source.poll();
+		if (entry == null) {
+			player.sendMessage(ChatColor.YELLOW + (undo ? "Nothing to undo" : "Nothing to redo"));
+			return;
+		}
+
+		busy.add(issuer);
+		if (entry.journal != null) {
+			replay(player, entry, entry.journal, undo);
+			return;
+		}
+
+		/* Read the journal back off the main thread */
+		final File file = entry.file;
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			FrameJournal journal = null;
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				journal = FrameJournal.read(in);
+			} catch (IOException e) {
+				plugin.getLogger().log(Level.WARNING, "Failed reading undo journal " + file, e);
+			}
+			if (!plugin.isEnabled()) {
+				return;
+			}
+			final FrameJournal loaded = journal;
+			Bukkit.getScheduler().runTask(plugin, () -> {
+				if (loaded == null) {
+					busy.remove(issuer);
+					discard(entry);
+					player.sendMessage(ChatColor.RED + "Internal error occurred - please check server logs");
+				} else if (!player.isOnline()) {
+					busy.remove(issuer);
+					source.push(entry);
+				} else {
+					replay(player, entry, loaded, undo);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Apply a journal backwards (undo) or forwards (redo)
+	 */
+	private void replay(@NotNull Player player, @NotNull Entry entry, @NotNull FrameJournal journal, boolean undo) {
+		UUID issuer = player.getUniqueId();
+		HashMap<UUID, ArrayDeque<Entry>> from = undo ? undos : redos;
+		HashMap<UUID, ArrayDeque<Entry>> to = undo ? redos : undos;
+
+		World world = Bukkit.getWorld(entry.world);
+		if (world == null) {
+			busy.remove(issuer);
+			from.computeIfAbsent(issuer, k -> new ArrayDeque<>()).push(entry);
+			player.sendMessage(ChatColor.RED + "The world of this operation is not loaded");
+			return;
+		}
+
+		final int total = journal.size();
+		final List<OutlineMerger.Face> faces = new ArrayList<>();
+		String description = (undo ? "Undo " : "Redo ") + entry.description;
+		BulkJob job = plugin.getBulkJobs().submit(player, description, total, (i, dry) -> {
+			/* Undo walks the journal backwards so that changes to the same frame are reverted in order */
+			return replayOne(player, world, journal, undo ? total - 1 - i : i, undo, faces);
+		}, finished -> {
+			busy.remove(issuer);
+			if (finished.isComplete()) {
+				push(to, issuer, entry);
+			} else {
+				/* Split into what has been replayed and what has not */
+				int done = finished.done();
+				FrameJournal replayed = undo ? journal.slice(total - done, total) : journal.slice(0, done);
+				FrameJournal remaining = undo ? journal.slice(0, total - done) : journal.slice(done, total);
+				discard(entry);
+				if (remaining.size() > 0) {
+					push(from, issuer, new Entry(entry.world, entry.description, remaining));
+				}
+				if (replayed.size() > 0) {
+					push(to, issuer, new Entry(entry.world, entry.description, replayed));
+				}
+			}
+
+			/* No drawing once shut down - the replay was cancelled because the plugin is disabling */
+			if (!faces.isEmpty() && !closed) {
+				Drawing.scheduleStickyMergedOutline(plugin, faces, world, REPLAYED, 3, 10);
+			}
+			String prefix = finished.isCancelled()
+					? String.format("Cancelled after %d of %d frames. ", finished.done(), finished.total())
+					: "";
+			player.sendMessage(ChatColor.GREEN + prefix + String.format("%s: %d frames restored", description,
+			                                                            finished.changedCount()));
+			int skipped = finished.done() - finished.changedCount();
+			if (skipped > 0) {
+				player.sendMessage(ChatColor.YELLOW + String.format(
+						"Skipped %d frames that were changed since or are not loaded", skipped));
+			}
+		});
+		if (job == null) {
+			busy.remove(issuer);
+			from.computeIfAbsent(issuer, k -> new ArrayDeque<>()).push(entry);
+		}
+	}
+
+	/**
+	 * Revert or repeat one change
+	 *
+	 * @return whether the change could be applied
+	 */
+	private boolean replayOne(@NotNull Player player, @NotNull World world, @NotNull FrameJournal journal, int i,
+	                          boolean undo, @NotNull List<OutlineMerger.Face> faces) {
+		long key = journal.blockKey(i);
+		int x = FrameIndex.blockKeyX(key);
+		int y = FrameIndex.blockKeyY(key);
+		int z = FrameIndex.blockKeyZ(key);
+		if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+			return false;
+		}
+
+		FrameJournal.Kind kind = journal.kind(i);
+		BlockFace facing = journal.facing(i);
+		boolean glow = journal.glow(i);
+		boolean existsBefore = kind != FrameJournal.Kind.CREATE;
+		boolean existsAfter = kind != FrameJournal.Kind.REMOVE;
+		boolean fromExists = undo ? existsAfter : existsBefore;
+		boolean toExists = undo ? existsBefore : existsAfter;
+		int fromMap = undo ? journal.mapAfter(i) : journal.mapBefore(i);
+		int fromFlags = undo ? journal.flagsAfter(i) : journal.flagsBefore(i);
+		int toMap = undo ? journal.mapBefore(i) : journal.mapAfter(i);
+		int toFlags = undo ? journal.flagsBefore(i) : journal.flagsAfter(i);
+
+		if (!fromExists) {
+			ItemFrame frame;
+			try {
+				frame = (ItemFrame) world.spawnEntity(new Location(world, x, y, z),
+				                                      glow ? EntityType.GLOW_ITEM_FRAME : EntityType.ITEM_FRAME);
+			} catch (IllegalArgumentException e) {
+				/* Supporting block is gone */
+				return false;
+			}
+			frame.setFacingDirection(facing, true);
+			setState(frame, toMap, toFlags, player);
+			faces.add(OutlineMerger.Face.of(frame));
+			return true;
+		}
+
+		/* Frame in the state the journal left it in */
+		ItemFrame frame = plugin.getFrameIndex().inBlockFace(world, x, y, z, facing).stream()
+		                        .filter(f -> f.isValid() && isGlow(f) == glow && mapId(f) == fromMap
+		                                     && (flags(f) & MATCHED_FLAGS) == (fromFlags & MATCHED_FLAGS))
+		                        .findFirst().orElse(null);
+		if (frame == null) {
+			return false;
+		}
+		faces.add(OutlineMerger.Face.of(frame));
+		if (!toExists) {
+			frame.remove();
+			return true;
+		}
+		setState(frame, toMap, toFlags, player);
+		plugin.getFrameIndex().touch(frame);
+		return true;
+	}
+
+	private static void setState(@NotNull ItemFrame frame, int map, int flags, @NotNull Player player) {
+		if (mapId(frame) != map) {
+			ItemStack content = null;
+			if (map != FrameJournal.NO_MAP) {
+				content = new ItemStack(Material.FILLED_MAP, 1);
+				MapMeta meta = (MapMeta) content.getItemMeta();
+				meta.setMapId(map);
+				content.setItemMeta(meta);
+			}
+			frame.setItem(content);
+		}
+		boolean fixed = (flags & FrameJournal.FLAG_FIXED) != 0;
+		if (FrameProperties.getProtected(frame) != fixed) {
+			FrameProtect.setProtectedByPlayer(frame, fixed, player);
+		}
+		boolean invisible = (flags & FrameJournal.FLAG_INVISIBLE) != 0;
+		if (FrameProperties.getHidden(frame) != invisible) {
+			FrameShowHide.setShowHideByPlayer(frame, invisible, player);
+		}
+	}
+
+	/**
+	 * Push onto a history stack, dropping the oldest entries past the configured depth
+	 */
+	private void push(@NotNull HashMap<UUID, ArrayDeque<Entry>> stacks, @NotNull UUID issuer, @NotNull Entry entry) {
+		if (closed) {
+			return;
+		}
+		ArrayDeque<Entry> stack = stacks.computeIfAbsent(issuer, k -> new ArrayDeque<>());
+		stack.push(entry);
+		int depth = Math.max(1, plugin.getConfig().getInt("commands.undo.max_depth", DEFAULT_MAX_DEPTH));
+		while (stack.size() > depth) {
+			discard(stack.removeLast());
+		}
+		if (entry.journal != null && entry.file == null
+		    && entry.journal.size() > plugin.getConfig().getInt("commands.undo.spill_records", DEFAULT_SPILL_RECORDS)) {
+			spill(issuer, entry);
+		}
+	}
+
+	/**
+	 * Write a journal to disk off the main thread, then drop it from memory
+	 */
+	private void spill(@NotNull UUID issuer, @NotNull Entry entry) {
+		final File file = new File(spillFolder(), String.format("%s-%d.journal", issuer, ++spillSeq));
+		final FrameJournal journal = entry.journal;
+		entry.file = file;
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			boolean written = false;
+			file.getParentFile().mkdirs();
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				journal.write(out);
+				written = true;
+			} catch (IOException e) {
+				plugin.getLogger().log(Level.WARNING, "Failed writing undo journal " + file, e);
+			}
+			if (!plugin.isEnabled()) {
+				return;
+			}
+			final boolean success = written;
+			Bukkit.getScheduler().runTask(plugin, () -> {
+				if (entry.discarded || !success) {
+					/* Keep in memory on failure */
+					entry.file = null;
+					file.delete();
+				} else {
+					entry.journal = null;
+				}
+			});
+		});
+	}
+
+	/**
+	 * Drop an entry for good, removing its journal from disk once written
+	 */
+	private void discard(@NotNull Entry entry) {
+		entry.discarded = true;
+		if (entry.file != null && entry.journal == null) {
+			entry.file.delete();
+		}
+	}
+}
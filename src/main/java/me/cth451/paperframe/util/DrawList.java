@@ -0,0 +1,236 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Particle.DustOptions;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Packed list of particle positions. A draw list may be built on any thread, but must not be modified any more once it
+ * is handed over to the main thread for drawing.
+ * <p>
+ * Points may be organized in groups, i.e. one group per outlined frame, so that whole groups can be skipped at draw
+ * time by a {@link GroupFilter}.
+ */
+public class DrawList {
+	/**
+	 * Decides at draw time whether a group of points is drawn
+	 */
+	@FunctionalInterface
+	public interface GroupFilter {
+		/**
+		 * @param key key the group was started with
+		 * @param x   x coordinate of the group center
+		 * @param y   y coordinate of the group center
+		 * @param z   z coordinate of the group center
+		 * @return whether points in this group should be drawn
+		 */
+		boolean test(long key, double x, double y, double z);
+	}
+
+	/**
+	 * A list with nothing to draw
+	 */
+	public static final DrawList EMPTY = new DrawList(0);
+
+	/* x, y, z of each point, one after another */
+	private double[] points;
+	private int size = 0;
+
+	/* Index into points where each group starts, key and center x, y, z of each group */
+	private int[] groupStarts = new int[0];
+	private long[] groupKeys = new long[0];
+	private double[] groupCenters = new double[0];
+	private int groups = 0;
+
+	/**
+	 * @param capacity number of points to reserve space for
+	 */
+	public DrawList(int capacity) {
+		this.points = new double[capacity * 3];
+	}
+
+	/**
+	 * Append one point
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 */
+	public void add(double x, double y, double z) {
+		if (size + 3 > points.length) {
+			points = Arrays.copyOf(points, Math.max(points.length * 2, 48));
+		}
+		points[size++] = x;
+		points[size++] = y;
+		points[size++] = z;
+	}
+
+	/**
+	 * Start a new group. Points appended from now on belong to this group until the next one is started.
+	 *
+	 * @param key key passed to {@link GroupFilter#test}, i.e. entity id of the outlined frame
+	 * @param x   x coordinate of the group center
+	 * @param y   y coordinate of the group center
+	 * @param z   z coordinate of the group center
+	 */
+	public void beginGroup(long key, double x, double y, double z) {
+		if (groups == groupStarts.length) {
+			int capacity = Math.max(groups * 2, 16);
+			groupStarts = Arrays.copyOf(groupStarts, capacity);
+			groupKeys = Arrays.copyOf(groupKeys, capacity);
+			groupCenters = Arrays.copyOf(groupCenters, capacity * 3);
+		}
+		groupStarts[groups] = size;
+		groupKeys[groups] = key;
+		groupCenters[groups * 3] = x;
+		groupCenters[groups * 3 + 1] = y;
+		groupCenters[groups * 3 + 2] = z;
+		groups++;
+	}
+
+	/**
+	 * Append points along a straight line, placed the same way {@link Drawing#drawLine} does
+	 *
+	 * @param x1      x of the starting point
+	 * @param y1      y of the starting point
+	 * @param z1      z of the starting point
+	 * @param x2      x of the end point
+	 * @param y2      y of the end point
+	 * @param z2      z of the end point
+	 * @param spacing spacing between two particles
+	 */
+	public void addLine(double x1, double y1, double z1, double x2, double y2, double z2, double spacing) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double dz = z2 - z1;
+		double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (distance == 0) {
+			return;
+		}
+		double step = spacing / distance;
+		int count = (int) Math.ceil(distance / spacing);
+		for (int i = 0; i < count; i++) {
+			double t = step * i;
+			add(x1 + dx * t, y1 + dy * t, z1 + dz * t);
+		}
+	}
+
+	/**
+	 * Append points along the 12 edges of a box
+	 *
+	 * @param mx      min x
+	 * @param my      min y
+	 * @param mz      min z
+	 * @param MX      max x
+	 * @param MY      max y
+	 * @param MZ      max z
+	 * @param spacing spacing between two particles
+	 */
+	public void addBox(double mx, double my, double mz, double MX, double MY, double MZ, double spacing) {
+		addLine(mx, my, mz, MX, my, mz, spacing);
+		addLine(MX, my, mz, MX, my, MZ, spacing);
+		addLine(MX, my, MZ, mx, my, MZ, spacing);
+		addLine(mx, my, MZ, mx, my, mz, spacing);
+		addLine(mx, MY, mz, MX, MY, mz, spacing);
+		addLine(MX, MY, mz, MX, MY, MZ, spacing);
+		addLine(MX, MY, MZ, mx, MY, MZ, spacing);
+		addLine(mx, MY, MZ, mx, MY, mz, spacing);
+		addLine(mx, my, mz, mx, MY, mz, spacing);
+		addLine(MX, my, mz, MX, MY, mz, spacing);
+		addLine(MX, my, MZ, MX, MY, MZ, spacing);
+		addLine(mx, my, MZ, mx, MY, MZ, spacing);
+	}
+
+	/**
+	 * Append the 8 corners of a box only - the lowest level of detail
+	 *
+	 * @param mx min x
+	 * @param my min y
+	 * @param mz min z
+	 * @param MX max x
+	 * @param MY max y
+	 * @param MZ max z
+	 */
+	public void addBoxCorners(double mx, double my, double mz, double MX, double MY, double MZ) {
+		add(mx, my, mz);
+		add(MX, my, mz);
+		add(MX, my, MZ);
+		add(mx, my, MZ);
+		add(mx, MY, mz);
+		add(MX, MY, mz);
+		add(MX, MY, MZ);
+		add(mx, MY, MZ);
+	}
+
+	/**
+	 * @return a copy of all points, x, y, z of each point one after another
+	 */
+	double[] toArray() {
+		return Arrays.copyOf(points, size);
+	}
+
+	/**
+	 * @return number of points in this list
+	 */
+	public int size() {
+		return size / 3;
+	}
+
+	/**
+	 * Spawn all points. Must be called on the main thread.
+	 *
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 */
+	public void draw(Drawing.ParticleSink sink, DustOptions options) {
+		draw(sink, options, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Spawn points in order until a limit is reached. Must be called on the main thread.
+	 *
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 * @param limit   maximum number of particles to spawn
+	 * @return number of particles spawned
+	 */
+	public int draw(Drawing.ParticleSink sink, DustOptions options, int limit) {
+		int end = (int) Math.min(size, 3L * Math.max(0, limit));
+		for (int i = 0; i < end; i += 3) {
+			sink.spawn(points[i], points[i + 1], points[i + 2], options);
+		}
+		return end / 3;
+	}
+
+	/**
+	 * Spawn points in order until a limit is reached, skipping groups rejected by a filter. Points appended before the
+	 * first group are always drawn. Must be called on the main thread.
+	 *
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 * @param limit   maximum number of particles to spawn - skipped groups do not count
+	 * @param filter  decides which groups are drawn, or null to draw everything
+	 * @return number of particles spawned
+	 */
+	public int draw(Drawing.ParticleSink sink, DustOptions options, int limit, @Nullable GroupFilter filter) {
+		if (filter == null || groups == 0) {
+			return draw(sink, options, limit);
+		}
+		int drawn = 0;
+		for (int g = -1; g < groups && drawn < limit; g++) {
+			int start = g < 0 ? 0 : groupStarts[g];
+			int end = g + 1 < groups ? groupStarts[g + 1] : size;
+			if (g >= 0 && !filter.test(groupKeys[g], groupCenters[g * 3], groupCenters[g * 3 + 1],
+			                           groupCenters[g * 3 + 2])) {
+				continue;
+			}
+			for (int i = start; i < end && drawn < limit; i += 3) {
+				sink.spawn(points[i], points[i + 1], points[i + 2], options);
+				drawn++;
+			}
+		}
+		return drawn;
+	}
+}
@@ -1,20 +1,55 @@
 package me.cth451.paperframe.util;
 
 import me.cth451.paperframe.PaperFramePlugin;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.Particle.DustOptions;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
 
+import java.util.Collection;
+
 public class Drawing {
 
 	/**
-	 * Schedule repeating drawing routines for finite times
+	 * Destination of spawned particles - either everyone near the particle or a single viewer
+	 */
+	@FunctionalInterface
+	public interface ParticleSink {
+		/**
+		 * Spawn one dust particle
+		 *
+		 * @param x       x coordinate
+		 * @param y       y coordinate
+		 * @param z       z coordinate
+		 * @param options redstone dust particle options
+		 */
+		void spawn(double x, double y, double z, DustOptions options);
+
+		/**
+		 * @param world world to spawn particles in
+		 * @return a sink that sends particles to all players near them
+		 */
+		static ParticleSink of(World world) {
+			return (x, y, z, options) -> world.spawnParticle(Particle.REDSTONE, x, y, z, 1, 0, 0, 0, 0, options);
+		}
+
+		/**
+		 * @param viewer the only player who will see the particles
+		 * @return a sink that sends particles to one player only
+		 */
+		static ParticleSink of(Player viewer) {
+			return (x, y, z, options) -> viewer.spawnParticle(Particle.REDSTONE, x, y, z, 1, 0, 0, 0, 0, options);
+		}
+	}
+
+	/**
+	 * Schedule repeating drawing routines for finite times. All sticky draws are served by the single
+	 * {@link me.cth451.paperframe.task.StickyDrawLoop} of the plugin.
 	 *
 	 * @param plugin        instance of this plugin
 	 * @param drawCall      drawing call
@@ -22,9 +57,7 @@ public class Drawing {
 	 * @param intervalTicks interval between two draw events in ticks
 	 */
 	public static void scheduleStickyDraw(PaperFramePlugin plugin, Runnable drawCall, int repeatFor, long intervalTicks) {
-		for (int i = 0; i < repeatFor; i++) {
-			Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, drawCall, i * intervalTicks);
-		}
+		plugin.getStickyDrawLoop().add(drawCall, repeatFor, intervalTicks);
 	}
 
 	/**
@@ -37,12 +70,49 @@ public class Drawing {
 	 * @param options redstone dust particle options
 	 */
 	public static void drawLine(Vector p1, Vector p2, double spacing, World world, DustOptions options) {
-		double distance = p1.distance(p2);
-		Vector vector = p2.clone().subtract(p1).normalize().multiply(spacing);
-		double length = 0;
-		for (; length < distance; p1.add(vector)) {
-			world.spawnParticle(Particle.REDSTONE, p1.getX(), p1.getY(), p1.getZ(), 1, 0, 0, 0, 0, options);
-			length += spacing;
+		drawLine(p1, p2, spacing, ParticleSink.of(world), options);
+	}
+
+	/**
+	 * Spawn particle along a straight line between two points
+	 *
+	 * @param p1      the starting point
+	 * @param p2      the end point
+	 * @param spacing spacing between two particles
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 */
+	public static void drawLine(Vector p1, Vector p2, double spacing, ParticleSink sink, DustOptions options) {
+		drawLine(p1.getX(), p1.getY(), p1.getZ(), p2.getX(), p2.getY(), p2.getZ(), spacing, sink, options);
+	}
+
+	/**
+	 * Spawn particle along a straight line between two points, without allocating
+	 *
+	 * @param x1      x of the starting point
+	 * @param y1      y of the starting point
+	 * @param z1      z of the starting point
+	 * @param x2      x of the end point
+	 * @param y2      y of the end point
+	 * @param z2      z of the end point
+	 * @param spacing spacing between two particles
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 */
+	public static void drawLine(double x1, double y1, double z1, double x2, double y2, double z2, double spacing,
+	                            ParticleSink sink, DustOptions options) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double dz = z2 - z1;
+		double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (distance == 0) {
+			return;
+		}
+		double step = spacing / distance;
+		int count = (int) Math.ceil(distance / spacing);
+		for (int i = 0; i < count; i++) {
+			double t = step * i;
+			sink.spawn(x1 + dx * t, y1 + dy * t, z1 + dz * t, options);
 		}
 	}
 
@@ -56,6 +126,17 @@ public class Drawing {
 		drawBoundingBox(entity.getBoundingBox(), entity.getWorld(), options);
 	}
 
+	/**
+	 * Draw bounding box of an entity, visible to one player only
+	 *
+	 * @param entity  item frame to draw
+	 * @param viewer  player to send particles to
+	 * @param options redstone dust particle options
+	 */
+	public static void drawBoundingBox(Entity entity, Player viewer, DustOptions options) {
+		drawBoundingBox(entity.getBoundingBox(), ParticleSink.of(viewer), options);
+	}
+
 	/**
 	 * Draw wireframe outline of a block
 	 *
@@ -77,25 +158,49 @@ public class Drawing {
 	 * @param options redstone dust options
 	 */
 	public static void drawBoundingBox(BoundingBox box, World world, DustOptions options) {
-		double mx = box.getMinX();
-		double my = box.getMinY();
-		double mz = box.getMinZ();
-		double MX = box.getMaxX();
-		double MY = box.getMaxY();
-		double MZ = box.getMaxZ();
-
-		double spacing = 0.5;
-		drawLine(new Vector(mx, my, mz), new Vector(MX, my, mz), spacing, world, options);
-		drawLine(new Vector(MX, my, mz), new Vector(MX, my, MZ), spacing, world, options);
-		drawLine(new Vector(MX, my, MZ), new Vector(mx, my, MZ), spacing, world, options);
-		drawLine(new Vector(mx, my, MZ), new Vector(mx, my, mz), spacing, world, options);
-		drawLine(new Vector(mx, MY, mz), new Vector(MX, MY, mz), spacing, world, options);
-		drawLine(new Vector(MX, MY, mz), new Vector(MX, MY, MZ), spacing, world, options);
-		drawLine(new Vector(MX, MY, MZ), new Vector(mx, MY, MZ), spacing, world, options);
-		drawLine(new Vector(mx, MY, MZ), new Vector(mx, MY, mz), spacing, world, options);
-		drawLine(new Vector(mx, my, mz), new Vector(mx, MY, mz), spacing, world, options);
-		drawLine(new Vector(MX, my, mz), new Vector(MX, MY, mz), spacing, world, options);
-		drawLine(new Vector(MX, my, MZ), new Vector(MX, MY, MZ), spacing, world, options);
-		drawLine(new Vector(mx, my, MZ), new Vector(mx, MY, MZ), spacing, world, options);
+		drawBoundingBox(box, ParticleSink.of(world), options);
+	}
+
+	/**
+	 * Draw a given bounding box into a particle sink. Uses a cached {@link WireframeTemplate} for the box size, so
+	 * nothing is allocated per box drawn.
+	 *
+	 * @param box     the bounding box to draw
+	 * @param sink    where particles are sent
+	 * @param options redstone dust options
+	 */
+	public static void drawBoundingBox(BoundingBox box, ParticleSink sink, DustOptions options) {
+		WireframeTemplate.of(box.getWidthX(), box.getHeight(), box.getWidthZ(), WireframeTemplate.DEFAULT_SPACING)
+		                 .draw(sink, options, box.getMinX(), box.getMinY(), box.getMinZ());
+	}
+
+	/**
+	 * Draw the outer outline of many block faces at once, i.e. feedback on a whole wall of frames. Coplanar adjacent
+	 * faces are merged by {@link OutlineMerger}.
+	 *
+	 * @param faces   faces to outline
+	 * @param sink    where particles are sent
+	 * @param options redstone dust options
+	 */
+	public static void drawMergedOutline(Collection<OutlineMerger.Face> faces, ParticleSink sink, DustOptions options) {
+		OutlineMerger.outline(faces, WireframeTemplate.DEFAULT_SPACING).draw(sink, options);
+	}
+
+	/**
+	 * Repeatedly draw the outer outline of many block faces. The outline is only computed once.
+	 *
+	 * @param plugin        instance of this plugin
+	 * @param faces         faces to outline
+	 * @param world         world to draw in
+	 * @param options       redstone dust options
+	 * @param repeatFor     number of occurrences to draw
+	 * @param intervalTicks interval between two draw events in ticks
+	 */
+	public static void scheduleStickyMergedOutline(PaperFramePlugin plugin, Collection<OutlineMerger.Face> faces,
+	                                               World world, DustOptions options, int repeatFor,
+	                                               long intervalTicks) {
+		DrawList outline = OutlineMerger.outline(faces, WireframeTemplate.DEFAULT_SPACING);
+		ParticleSink sink = ParticleSink.of(world);
+		scheduleStickyDraw(plugin, () -> outline.draw(sink, options), repeatFor, intervalTicks);
 	}
 }
@@ -1,9 +1,7 @@
 package me.cth451.paperframe.util;
 
 import me.cth451.paperframe.util.getopt.UnixFlagSpec;
-import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.World;
 import org.bukkit.entity.ItemFrame;
 
 import java.util.function.Predicate;
@@ -15,21 +13,31 @@ public enum FrameFilter implements Predicate<ItemFrame> {
 	/**
 	 * retain hidden frames only
 	 */
-	HIDDEN,
+	HIDDEN(0),
 	/**
 	 * retain protected item frames only
 	 */
-	PROTECTED,
+	PROTECTED(0),
 	/**
 	 * retain frames that are stacked on top of other frames only
 	 */
-	STACKED,
+	STACKED(2),
 	/**
 	 * retain item frames that doesn't have anything in it
 	 */
-	EMPTY,
+	EMPTY(1),
 	;
 
+	/**
+	 * Relative cost of evaluating this filter on a live frame: 0 for entity flags, 1 for item lookups, 2 for spatial
+	 * queries. {@link FrameFilterSet} evaluates cheaper filters first.
+	 */
+	public final int cost;
+
+	FrameFilter(int cost) {
+		this.cost = cost;
+	}
+
 	/**
 	 * @return human readable description
 	 */
@@ -48,16 +56,27 @@ public enum FrameFilter implements Predicate<ItemFrame> {
 		return switch (this) {
 			case HIDDEN -> FrameProperties.getHidden(frame);
 			case PROTECTED -> FrameProperties.getProtected(frame);
-			case STACKED -> {
-				World world = frame.getWorld();
-				Location loc = frame.getLocation();
-				/* Use a ridiculously small selection range */
-				yield world.getNearbyEntitiesByType(ItemFrame.class, loc, 0.015625d).size() > 1L;
-			}
+			/* Stacks share the containing block and facing - look up the bucket instead of a spatial query */
+			case STACKED -> HighlightOptions.plugin.getFrameIndex().stackSize(frame) > 1;
 			case EMPTY -> frame.getItem().getType() == Material.AIR || frame.getItem().getAmount() == 0;
 		};
 	}
 
+	/**
+	 * Apply filter to a snapshot of an item frame. Safe to call off the main thread.
+	 *
+	 * @param frame snapshot of the item frame to check
+	 * @return whether this frame satisfies the criteria of the filter
+	 */
+	public boolean test(FrameSnapshot frame) {
+		return switch (this) {
+			case HIDDEN -> !frame.visible();
+			case PROTECTED -> frame.fixed();
+			case STACKED -> frame.stacked();
+			case EMPTY -> frame.item() == Material.AIR || frame.amount() == 0;
+		};
+	}
+
 	/**
 	 * Return flag specification for this filter for use in /framehighlight command
 	 *
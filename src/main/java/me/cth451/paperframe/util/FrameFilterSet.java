@@ -0,0 +1,95 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Material;
+import org.bukkit.entity.ItemFrame;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.function.Predicate;
+
+/**
+ * A set of {@link FrameFilter}s compiled into one predicate. A frame passes if it satisfies all filters in the set;
+ * an empty set passes everything.
+ * <p>
+ * Evaluation short-circuits on the first failing filter. Filters on live frames run in order of
+ * {@link FrameFilter#cost} so that spatial queries only happen for frames that passed the flag checks. Immutable and
+ * safe to share between threads.
+ */
+public class FrameFilterSet implements Predicate<ItemFrame> {
+	private static final int HIDDEN = 1 << FrameFilter.HIDDEN.ordinal();
+	private static final int PROTECTED = 1 << FrameFilter.PROTECTED.ordinal();
+	private static final int STACKED = 1 << FrameFilter.STACKED.ordinal();
+	private static final int EMPTY = 1 << FrameFilter.EMPTY.ordinal();
+
+	/* One bit per filter in the set, indexed by ordinal */
+	private final int mask;
+
+	/* Filters in the set, cheapest first */
+	private final FrameFilter[] ordered;
+
+	/**
+	 * @param filters filters to combine - duplicates are ignored
+	 */
+	public FrameFilterSet(@NotNull Collection<FrameFilter> filters) {
+		EnumSet<FrameFilter> set = EnumSet.noneOf(FrameFilter.class);
+		set.addAll(filters);
+		this.ordered = set.stream().sorted(Comparator.comparingInt(f -> f.cost)).toArray(FrameFilter[]::new);
+		int bits = 0;
+		for (FrameFilter f : ordered) {
+			bits |= 1 << f.ordinal();
+		}
+		this.mask = bits;
+	}
+
+	/**
+	 * @param filter filter to look for
+	 * @return whether the filter is part of this set
+	 */
+	public boolean contains(@NotNull FrameFilter filter) {
+		return (mask & 1 << filter.ordinal()) != 0;
+	}
+
+	/**
+	 * @return whether this set passes every frame
+	 */
+	public boolean isEmpty() {
+		return mask == 0;
+	}
+
+	/**
+	 * Apply all filters to a live item frame, cheapest first. Must be called on the main thread.
+	 *
+	 * @param frame item frame to check
+	 * @return whether this frame satisfies all filters
+	 */
+	@Override
+	public boolean test(ItemFrame frame) {
+		for (FrameFilter f : ordered) {
+			if (!f.test(frame)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Apply all filters to a snapshot of an item frame. Safe to call off the main thread.
+	 *
+	 * @param frame snapshot of the item frame to check
+	 * @return whether this frame satisfies all filters
+	 */
+	public boolean test(@NotNull FrameSnapshot frame) {
+		if ((mask & HIDDEN) != 0 && frame.visible()) {
+			return false;
+		}
+		if ((mask & PROTECTED) != 0 && !frame.fixed()) {
+			return false;
+		}
+		if ((mask & EMPTY) != 0 && frame.item() != Material.AIR && frame.amount() != 0) {
+			return false;
+		}
+		return (mask & STACKED) == 0 || frame.stacked();
+	}
+}
@@ -0,0 +1,465 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of loaded item frames, keyed by world, chunk and the block containing the frame.
+ * <p>
+ * Frames are bucketed under the block their location falls into, i.e. the air block in front of the supporting block
+ * face. Frames sharing a bucket and a facing are stacked on top of each other.
+ * <p>
+ * Every chunk carries a version number drawn from a global counter. It is bumped whenever a frame in the chunk is
+ * added, removed or {@link FrameIndex#touch touched}, so that cached query results can be validated cheaply with
+ * {@link FrameIndex#version(World, BoundingBox)}. Chunks left without frames are dropped from the index; the last version
+ * of each is remembered in a bounded list of retired chunks, so that cached results still covering their frames are
+ * invalidated all the same.
+ * <p>
+ * The index is kept up to date by {@link me.cth451.paperframe.eventlistener.FrameIndexListener}. It is not thread
+ * safe and must only be accessed from the main server thread.
+ */
+public class FrameIndex {
+	/**
+	 * Frames within one chunk, bucketed by containing block
+	 */
+	private static class ChunkBucket {
+		final HashMap<Long, ArrayList<ItemFrame>> blocks = new HashMap<>();
+		long version = 0;
+	}
+
+	/**
+	 * All indexed chunks of one world
+	 */
+	private static class WorldIndex {
+		final HashMap<Long, ChunkBucket> chunks = new HashMap<>();
+		/* Block key each frame was indexed under - frames may have moved by the time they are removed */
+		final HashMap<ItemFrame, Long> positions = new HashMap<>();
+		/* Last version of chunks dropped for being empty, until the chunk is indexed again */
+		final HashMap<Long, Long> retired = new HashMap<>();
+		/* Covers all retired chunks forgotten when the list above overflowed */
+		long retiredFloor = 0;
+	}
+
+	/* Retired chunks remembered per world before falling back to the world wide floor */
+	private static final int MAX_RETIRED = 1024;
+
+	private final HashMap<UUID, WorldIndex> worlds = new HashMap<>();
+
+	/* Source of chunk versions - strictly increasing */
+	private long modCount = 0;
+
+	/**
+	 * Pack block coordinates into a single long, using the same layout as vanilla block positions
+	 *
+	 * @param x block x
+	 * @param y block y
+	 * @param z block z
+	 * @return packed block key
+	 */
+	public static long blockKey(int x, int y, int z) {
+		return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | ((long) y & 0xFFFL);
+	}
+
+	public static int blockKeyX(long key) {
+		return (int) (key >> 38);
+	}
+
+	public static int blockKeyY(long key) {
+		return (int) (key << 52 >> 52);
+	}
+
+	public static int blockKeyZ(long key) {
+		return (int) (key << 26 >> 38);
+	}
+
+	/**
+	 * Pack chunk coordinates into a single long
+	 *
+	 * @param chunkX chunk x
+	 * @param chunkZ chunk z
+	 * @return packed chunk key
+	 */
+	public static long chunkKey(int chunkX, int chunkZ) {
+		return (long) chunkX << 32 | ((long) chunkZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param blockKey packed block key
+	 * @return packed key of the chunk containing the block
+	 */
+	public static long chunkKeyOfBlock(long blockKey) {
+		return chunkKey(blockKeyX(blockKey) >> 4, blockKeyZ(blockKey) >> 4);
+	}
+
+	/**
+	 * @param location a location
+	 * @return packed key of the block containing this location
+	 */
+	public static long blockKey(@NotNull Location location) {
+		return blockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+	}
+
+	/**
+	 * Add an item frame to the index. Re-adding an indexed frame moves it to its current block if needed.
+	 *
+	 * @param frame frame to add
+	 */
+	public void add(@NotNull ItemFrame frame) {
+		WorldIndex index = worlds.computeIfAbsent(frame.getWorld().getUID(), (uid) -> new WorldIndex());
+		long key = blockKey(frame.getLocation());
+		Long previous = index.positions.put(frame, key);
+		if (previous != null) {
+			if (previous == key) {
+				return;
+			}
+			detach(index, frame, previous);
+		}
+		long chunk = chunkKeyOfBlock(key);
+		ChunkBucket bucket = index.chunks.get(chunk);
+		if (bucket == null) {
+			bucket = new ChunkBucket();
+			index.chunks.put(chunk, bucket);
+			/* The new version supersedes the retired one */
+			index.retired.remove(chunk);
+		}
+		bucket.blocks.computeIfAbsent(key, (k) -> new ArrayList<>(1)).add(frame);
+		bucket.version = ++modCount;
+	}
+
+	/**
+	 * Remove an item frame from the index
+	 *
+	 * @param frame frame to remove
+	 */
+	public void remove(@NotNull ItemFrame frame) {
+		WorldIndex index = worlds.get(frame.getWorld().getUID());
+		if (index == null) {
+			return;
+		}
+		Long previous = index.positions.remove(frame);
+		if (previous != null) {
+			detach(index, frame, previous);
+		}
+	}
+
+	/**
+	 * Remove a frame from its bucket. Chunk buckets left empty are dropped and their final version retired, so that it
+	 * keeps invalidating cached results that still included the removed frames.
+	 */
+	private void detach(WorldIndex index, ItemFrame frame, long key) {
+		long chunk = chunkKeyOfBlock(key);
+		ChunkBucket bucket = index.chunks.get(chunk);
+		if (bucket == null) {
+			return;
+		}
+		ArrayList<ItemFrame> frames = bucket.blocks.get(key);
+		if (frames == null) {
+			return;
+		}
+		frames.remove(frame);
+		if (frames.isEmpty()) {
+			bucket.blocks.remove(key);
+		}
+		bucket.version = ++modCount;
+		if (bucket.blocks.isEmpty()) {
+			index.chunks.remove(chunk);
+			retire(index, chunk, bucket.version);
+		}
+	}
+
+	/**
+	 * Remember the final version of a dropped chunk. Once too many are remembered, they are all folded into the world
+	 * wide floor, which is conservative but bounded.
+	 */
+	private static void retire(WorldIndex index, long chunk, long version) {
+		if (index.retired.size() >= MAX_RETIRED) {
+			index.retired.clear();
+			/* Versions are strictly increasing - this one is the highest retired so far */
+			index.retiredFloor = version;
+			return;
+		}
+		index.retired.put(chunk, version);
+	}
+
+	/**
+	 * Notify the index that the state of a frame (hidden, protected, content, ...) has changed. This does not alter
+	 * the index itself but invalidates cached results covering the frame.
+	 *
+	 * @param frame changed frame
+	 */
+	public void touch(@NotNull ItemFrame frame) {
+		WorldIndex index = worlds.get(frame.getWorld().getUID());
+		if (index == null) {
+			return;
+		}
+		Long key = index.positions.get(frame);
+		if (key == null) {
+			return;
+		}
+		ChunkBucket bucket = index.chunks.get(chunkKeyOfBlock(key));
+		if (bucket != null) {
+			bucket.version = ++modCount;
+		}
+	}
+
+	/**
+	 * Add all item frames among a collection of entities
+	 *
+	 * @param entities entities, usually from a chunk load
+	 */
+	public void addAll(@NotNull Collection<? extends Entity> entities) {
+		for (Entity entity : entities) {
+			if (entity instanceof ItemFrame frame) {
+				add(frame);
+			}
+		}
+	}
+
+	/**
+	 * Remove all item frames among a collection of entities
+	 *
+	 * @param entities entities, usually from a chunk unload
+	 */
+	public void removeAll(@NotNull Collection<? extends Entity> entities) {
+		for (Entity entity : entities) {
+			if (entity instanceof ItemFrame frame) {
+				remove(frame);
+			}
+		}
+	}
+
+	/**
+	 * (Re)build the index for a world from its currently loaded entities
+	 *
+	 * @param world world to scan
+	 */
+	public void indexWorld(@NotNull World world) {
+		dropWorld(world);
+		world.getEntitiesByClass(ItemFrame.class).forEach(this::add);
+	}
+
+	/**
+	 * Forget everything about a world, i.e. when it unloads
+	 *
+	 * @param world world to drop
+	 */
+	public void dropWorld(@NotNull World world) {
+		worlds.remove(world.getUID());
+	}
+
+	/**
+	 * Find all item frames whose location is contained in a bounding box. Only chunks overlapping the box are visited.
+	 *
+	 * @param world world to search in
+	 * @param box   bounding box
+	 * @return a list of item frames within the box
+	 */
+	public @NotNull List<ItemFrame> inBoundingBox(@NotNull World world, @NotNull BoundingBox box) {
+		List<ItemFrame> found = new ArrayList<>();
+		WorldIndex index = worlds.get(world.getUID());
+		if (index != null) {
+			forEachChunk(index.chunks, box, (bucket) -> collect(bucket, box, found));
+		}
+		return found;
+	}
+
+	/**
+	 * Answer many bounding box queries in one pass. Every chunk overlapping any of the boxes is visited once, and each
+	 * frame in it is only tested against the boxes overlapping that chunk.
+	 *
+	 * @param world world to search in
+	 * @param boxes bounding boxes
+	 * @return for each box in the given order, a list of item frames within that box
+	 */
+	public @NotNull List<List<ItemFrame>> inBoundingBoxes(@NotNull World world, @NotNull List<BoundingBox> boxes) {
+		List<List<ItemFrame>> found = new ArrayList<>(boxes.size());
+		for (int i = 0; i < boxes.size(); i++) {
+			found.add(new ArrayList<>());
+		}
+		WorldIndex index = worlds.get(world.getUID());
+		if (index == null) {
+			return found;
+		}
+
+		/* Boxes overlapping each chunk, by index */
+		HashMap<Long, List<Integer>> byChunk = new HashMap<>();
+		for (int i = 0; i < boxes.size(); i++) {
+			BoundingBox box = boxes.get(i);
+			int maxChunkX = (int) Math.floor(box.getMaxX()) >> 4;
+			int maxChunkZ = (int) Math.floor(box.getMaxZ()) >> 4;
+			for (int chunkX = (int) Math.floor(box.getMinX()) >> 4; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = (int) Math.floor(box.getMinZ()) >> 4; chunkZ <= maxChunkZ; chunkZ++) {
+					long chunk = chunkKey(chunkX, chunkZ);
+					if (index.chunks.containsKey(chunk)) {
+						byChunk.computeIfAbsent(chunk, k -> new ArrayList<>(1)).add(i);
+					}
+				}
+			}
+		}
+
+		byChunk.forEach((chunk, overlapping) -> {
+			for (ArrayList<ItemFrame> frames : index.chunks.get(chunk).blocks.values()) {
+				for (ItemFrame frame : frames) {
+					Location loc = frame.getLocation();
+					for (int i : overlapping) {
+						if (boxes.get(i).contains(loc.getX(), loc.getY(), loc.getZ())) {
+							found.get(i).add(frame);
+						}
+					}
+				}
+			}
+		});
+		return found;
+	}
+
+	/**
+	 * Compute a version stamp for a region. The stamp changes whenever a frame is added to, removed from or touched
+	 * within any chunk overlapping the box.
+	 *
+	 * @param world world to check
+	 * @param box   bounding box
+	 * @return version stamp, 0 if nothing has ever been indexed in the world
+	 */
+	public long version(@NotNull World world, @NotNull BoundingBox box) {
+		WorldIndex index = worlds.get(world.getUID());
+		if (index == null) {
+			return 0;
+		}
+		long[] version = {index.retiredFloor};
+		forEachChunk(index.chunks, box, (bucket) -> version[0] = Math.max(version[0], bucket.version));
+		forEachChunk(index.retired, box, (retired) -> version[0] = Math.max(version[0], retired));
+		return version[0];
+	}
+
+	/**
+	 * Visit all entries of a chunk keyed map overlapping a bounding box
+	 */
+	private static <T> void forEachChunk(HashMap<Long, T> chunks, BoundingBox box, Consumer<T> consumer) {
+		if (chunks.isEmpty()) {
+			return;
+		}
+
+		int minChunkX = (int) Math.floor(box.getMinX()) >> 4;
+		int minChunkZ = (int) Math.floor(box.getMinZ()) >> 4;
+		int maxChunkX = (int) Math.floor(box.getMaxX()) >> 4;
+		int maxChunkZ = (int) Math.floor(box.getMaxZ()) >> 4;
+		long spannedChunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+
+		if (spannedChunks > chunks.size()) {
+			/* Box is larger than what is loaded - cheaper to walk the populated chunks instead */
+			chunks.forEach((chunk, bucket) -> {
+				int chunkX = (int) (chunk >> 32);
+				int chunkZ = (int) (long) chunk;
+				if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+					consumer.accept(bucket);
+				}
+			});
+		} else {
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					T bucket = chunks.get(chunkKey(chunkX, chunkZ));
+					if (bucket != null) {
+						consumer.accept(bucket);
+					}
+				}
+			}
+		}
+	}
+
+	private static void collect(ChunkBucket bucket, BoundingBox box, List<ItemFrame> found) {
+		for (ArrayList<ItemFrame> frames : bucket.blocks.values()) {
+			for (ItemFrame frame : frames) {
+				Location loc = frame.getLocation();
+				if (box.contains(loc.getX(), loc.getY(), loc.getZ())) {
+					found.add(frame);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find all item frames located in one block, regardless of their facing
+	 *
+	 * @param world world to search in
+	 * @param x     block x
+	 * @param y     block y
+	 * @param z     block z
+	 * @return an unmodifiable list of frames in the block
+	 */
+	public @NotNull List<ItemFrame> inBlock(@NotNull World world, int x, int y, int z) {
+		WorldIndex index = worlds.get(world.getUID());
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		long key = blockKey(x, y, z);
+		ChunkBucket bucket = index.chunks.get(chunkKeyOfBlock(key));
+		if (bucket == null) {
+			return Collections.emptyList();
+		}
+		ArrayList<ItemFrame> frames = bucket.blocks.get(key);
+		return frames == null ? Collections.emptyList() : Collections.unmodifiableList(frames);
+	}
+
+	/**
+	 * Find all item frames located in one block with a given facing, i.e. a stack of frames on the same block face
+	 *
+	 * @param world  world to search in
+	 * @param x      x of the block containing the frames
+	 * @param y      y of the block containing the frames
+	 * @param z      z of the block containing the frames
+	 * @param facing facing of the frames
+	 * @return a list of frames
+	 */
+	public @NotNull List<ItemFrame> inBlockFace(@NotNull World world, int x, int y, int z, @NotNull BlockFace facing) {
+		List<ItemFrame> frames = inBlock(world, x, y, z);
+		if (frames.isEmpty()) {
+			return frames;
+		}
+		return frames.stream().filter(f -> f.getFacing() == facing).toList();
+	}
+
+	/**
+	 * Count frames sharing the block and facing of a frame, including the frame itself
+	 *
+	 * @param frame frame to check
+	 * @return number of frames in the stack, 0 if the frame is not indexed
+	 */
+	public int stackSize(@NotNull ItemFrame frame) {
+		WorldIndex index = worlds.get(frame.getWorld().getUID());
+		if (index == null) {
+			return 0;
+		}
+		Long key = index.positions.get(frame);
+		if (key == null) {
+			return 0;
+		}
+		ChunkBucket bucket = index.chunks.get(chunkKeyOfBlock(key));
+		ArrayList<ItemFrame> frames = bucket == null ? null : bucket.blocks.get(key);
+		if (frames == null) {
+			return 0;
+		}
+		BlockFace facing = frame.getFacing();
+		int count = 0;
+		for (ItemFrame f : frames) {
+			if (f.getFacing() == facing) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return total number of indexed frames across all worlds
+	 */
+	public int size() {
+		return worlds.values().stream().mapToInt(w -> w.positions.size()).sum();
+	}
+}
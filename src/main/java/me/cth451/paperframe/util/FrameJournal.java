@@ -0,0 +1,199 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.block.BlockFace;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A list of frame changes stored as packed primitives, three longs per change, so that journals of large operations
+ * neither hold on to entities nor allocate an object per frame:
+ * <ol>
+ *     <li>block position of the frame, see {@link FrameIndex#blockKey(int, int, int)},</li>
+ *     <li>map id before the change in the upper half, map id after in the lower half,</li>
+ *     <li>facing, frame type, kind of change and state flags before / after the change.</li>
+ * </ol>
+ * Frames holding no map are recorded as {@link FrameJournal#NO_MAP}.
+ */
+public class FrameJournal {
+	/**
+	 * What happened to a frame
+	 */
+	public enum Kind {
+		CREATE,
+		REMOVE,
+		MODIFY,
+	}
+
+	/**
+	 * Map id of frames holding no map
+	 */
+	public static final int NO_MAP = -1;
+
+	/**
+	 * Flag: frame is fixed, i.e. protected
+	 */
+	public static final int FLAG_FIXED = 1;
+	/**
+	 * Flag: frame is invisible, i.e. hidden
+	 */
+	public static final int FLAG_INVISIBLE = 1 << 1;
+	/**
+	 * Flag: frame holds an item other than a map, which is not recorded
+	 */
+	public static final int FLAG_OTHER_ITEM = 1 << 2;
+
+	private static final int WORDS = 3;
+	private static final int MAGIC = 0x50464a31;
+	private static final BlockFace[] FACES = BlockFace.values();
+	private static final Kind[] KINDS = Kind.values();
+
+	/* Meta word layout */
+	private static final int FACING_SHIFT = 0;
+	private static final int GLOW_SHIFT = 8;
+	private static final int KIND_SHIFT = 9;
+	private static final int FLAGS_BEFORE_SHIFT = 16;
+	private static final int FLAGS_AFTER_SHIFT = 24;
+
+	private long[] data;
+	private int size = 0;
+
+	public FrameJournal() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity number of changes to allocate room for
+	 */
+	public FrameJournal(int capacity) {
+		this.data = new long[Math.max(1, capacity) * WORDS];
+	}
+
+	/**
+	 * Append a change
+	 *
+	 * @param kind        what happened to the frame
+	 * @param blockKey    packed position of the frame
+	 * @param facing      facing of the frame
+	 * @param glow        whether the frame is a glow item frame
+	 * @param mapBefore   map id before the change
+	 * @param flagsBefore state flags before the change
+	 * @param mapAfter    map id after the change
+	 * @param flagsAfter  state flags after the change
+	 */
+	public void add(@NotNull Kind kind, long blockKey, @NotNull BlockFace facing, boolean glow,
+	                int mapBefore, int flagsBefore, int mapAfter, int flagsAfter) {
+		if ((size + 1) * WORDS > data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		int base = size * WORDS;
+		data[base] = blockKey;
+		data[base + 1] = (long) mapBefore << 32 | (mapAfter & 0xFFFFFFFFL);
+		data[base + 2] = (long) facing.ordinal() << FACING_SHIFT
+		                 | (glow ? 1L : 0L) << GLOW_SHIFT
+		                 | (long) kind.ordinal() << KIND_SHIFT
+		                 | (long) (flagsBefore & 0xFF) << FLAGS_BEFORE_SHIFT
+		                 | (long) (flagsAfter & 0xFF) << FLAGS_AFTER_SHIFT;
+		size++;
+	}
+
+	/**
+	 * @return number of changes recorded
+	 */
+	public int size() {
+		return size;
+	}
+
+	public @NotNull Kind kind(int i) {
+		return KINDS[meta(i, KIND_SHIFT, 0x3)];
+	}
+
+	public long blockKey(int i) {
+		return data[i * WORDS];
+	}
+
+	public @NotNull BlockFace facing(int i) {
+		return FACES[meta(i, FACING_SHIFT, 0xFF)];
+	}
+
+	public boolean glow(int i) {
+		return meta(i, GLOW_SHIFT, 0x1) != 0;
+	}
+
+	public int mapBefore(int i) {
+		return (int) (data[i * WORDS + 1] >> 32);
+	}
+
+	public int mapAfter(int i) {
+		return (int) data[i * WORDS + 1];
+	}
+
+	public int flagsBefore(int i) {
+		return meta(i, FLAGS_BEFORE_SHIFT, 0xFF);
+	}
+
+	public int flagsAfter(int i) {
+		return meta(i, FLAGS_AFTER_SHIFT, 0xFF);
+	}
+
+	private int meta(int i, int shift, int mask) {
+		return (int) (data[i * WORDS + 2] >>> shift) & mask;
+	}
+
+	/**
+	 * Copy a range of changes into a new journal
+	 *
+	 * @param from first change to copy, inclusive
+	 * @param to   last change to copy, exclusive
+	 * @return a new journal
+	 */
+	public @NotNull FrameJournal slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException(String.format("Range [%d, %d) out of [0, %d)", from, to, size));
+		}
+		FrameJournal slice = new FrameJournal(to - from);
+		System.arraycopy(data, from * WORDS, slice.data, 0, (to - from) * WORDS);
+		slice.size = to - from;
+		return slice;
+	}
+
+	/**
+	 * Serialize all changes
+	 *
+	 * @param out destination
+	 * @throws IOException on write failure
+	 */
+	public void write(@NotNull DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(size);
+		for (int i = 0; i < size * WORDS; i++) {
+			out.writeLong(data[i]);
+		}
+	}
+
+	/**
+	 * Deserialize a journal written by {@link FrameJournal#write(DataOutput)}
+	 *
+	 * @param in source
+	 * @return the journal
+	 * @throws IOException on read failure or malformed input
+	 */
+	public static @NotNull FrameJournal read(@NotNull DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a frame journal");
+		}
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid frame journal size " + size);
+		}
+		FrameJournal journal = new FrameJournal(size);
+		for (int i = 0; i < size * WORDS; i++) {
+			journal.data[i] = in.readLong();
+		}
+		journal.size = size;
+		return journal;
+	}
+}
@@ -0,0 +1,112 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable copy of the item frame state needed for highlighting. Snapshots are captured on the main thread and may
+ * then be filtered and turned into geometry on any thread.
+ * <p>
+ * Frames sharing the same (blockKey, facing) pair are stacked on top of each other.
+ *
+ * @param entityId entity id of the frame, used to find the frame again on the main thread
+ * @param x        x coordinate of the frame location
+ * @param y        y coordinate of the frame location
+ * @param z        z coordinate of the frame location
+ * @param blockKey packed position of the block containing the frame, see {@link FrameIndex#blockKey(int, int, int)}
+ * @param facing   direction the frame is facing
+ * @param fixed    native Fixed tag, i.e. protected status
+ * @param visible  native Visible tag, i.e. hidden status
+ * @param item     type of the item in the frame
+ * @param amount   amount of the item in the frame
+ * @param stacked  whether other frames share the same block and facing
+ * @param minX     bounding box min x
+ * @param minY     bounding box min y
+ * @param minZ     bounding box min z
+ * @param maxX     bounding box max x
+ * @param maxY     bounding box max y
+ * @param maxZ     bounding box max z
+ */
+public record FrameSnapshot(int entityId,
+                            double x, double y, double z,
+                            long blockKey,
+                            @NotNull BlockFace facing,
+                            boolean fixed,
+                            boolean visible,
+                            @NotNull Material item,
+                            int amount,
+                            boolean stacked,
+                            double minX, double minY, double minZ,
+                            double maxX, double maxY, double maxZ) {
+
+	/* Spot shared by stacked frames */
+	private record Spot(long blockKey, BlockFace facing) {
+	}
+
+	/**
+	 * Capture snapshots of a batch of frames. Must be called on the main thread.
+	 * <p>
+	 * Stacking is resolved within the batch in one pass: frames are bucketed by (blockKey, facing) and every frame in
+	 * a bucket of more than one is marked stacked. Batches covering a region by frame location always contain whole
+	 * stacks.
+	 *
+	 * @param frames        frames to capture
+	 * @param detectStacked whether to compute stacking - skip if the result is not needed
+	 * @return snapshots, in the order of the frames given
+	 */
+	public static @NotNull List<FrameSnapshot> capture(@NotNull Collection<ItemFrame> frames, boolean detectStacked) {
+		List<FrameSnapshot> snapshots = new ArrayList<>(frames.size());
+		if (!detectStacked) {
+			frames.forEach(frame -> snapshots.add(of(frame, false)));
+			return snapshots;
+		}
+
+		HashMap<Spot, Integer> counts = new HashMap<>();
+		Spot[] spots = new Spot[frames.size()];
+		int i = 0;
+		for (ItemFrame frame : frames) {
+			spots[i] = new Spot(FrameIndex.blockKey(frame.getLocation()), frame.getFacing());
+			counts.merge(spots[i], 1, Integer::sum);
+			i++;
+		}
+		i = 0;
+		for (ItemFrame frame : frames) {
+			snapshots.add(of(frame, counts.get(spots[i++]) > 1));
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Capture a snapshot of a frame. Must be called on the main thread.
+	 *
+	 * @param frame   frame to capture
+	 * @param stacked whether other frames share the same block and facing, see {@link FrameSnapshot#capture}
+	 * @return snapshot
+	 */
+	public static @NotNull FrameSnapshot of(@NotNull ItemFrame frame, boolean stacked) {
+		Location loc = frame.getLocation();
+		ItemStack content = frame.getItem();
+		BoundingBox box = frame.getBoundingBox();
+		return new FrameSnapshot(frame.getEntityId(),
+		                         loc.getX(), loc.getY(), loc.getZ(),
+		                         FrameIndex.blockKey(loc),
+		                         frame.getFacing(),
+		                         frame.isFixed(),
+		                         frame.isVisible(),
+		                         content.getType(),
+		                         content.getAmount(),
+		                         stacked,
+		                         box.getMinX(), box.getMinY(), box.getMinZ(),
+		                         box.getMaxX(), box.getMaxY(), box.getMaxZ());
+	}
+}
@@ -0,0 +1,120 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapPalette;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Color;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Draws highlighted frames as a top-down minimap onto a map, north facing up. Only the highlighting player sees the
+ * minimap - other players holding the same map see it as usual.
+ * <p>
+ * Each frame is a dot colored by the first of {@link HighlightMapRenderer#PRIORITY} it matches. The canvas is only
+ * redrawn after {@link HighlightMapRenderer#update} has been given a different frame set or area, so an unchanged
+ * minimap causes no map packets.
+ * <p>
+ * Must only be used on the main thread.
+ */
+@SuppressWarnings("deprecation")
+public class HighlightMapRenderer extends MapRenderer {
+	/**
+	 * Order in which frame properties decide the color of a dot
+	 */
+	public static final FrameFilter[] PRIORITY = {FrameFilter.STACKED, FrameFilter.HIDDEN, FrameFilter.EMPTY,
+	                                              FrameFilter.PROTECTED};
+
+	private static final int SIZE = 128;
+	private static final byte BACKGROUND = MapPalette.matchColor(new Color(32, 32, 32));
+	private static final byte BORDER = MapPalette.matchColor(new Color(96, 96, 96));
+	private static final byte NEUTRAL = MapPalette.matchColor(Color.WHITE);
+	private static final EnumMap<FrameFilter, Byte> COLORS = new EnumMap<>(FrameFilter.class);
+
+	static {
+		COLORS.put(FrameFilter.STACKED, MapPalette.matchColor(new Color(255, 64, 64)));
+		COLORS.put(FrameFilter.HIDDEN, MapPalette.matchColor(new Color(64, 160, 255)));
+		COLORS.put(FrameFilter.EMPTY, MapPalette.matchColor(new Color(255, 220, 64)));
+		COLORS.put(FrameFilter.PROTECTED, MapPalette.matchColor(new Color(64, 220, 64)));
+	}
+
+	private final UUID owner;
+
+	/* Latest area and frames, and whether they have been drawn */
+	private BoundingBox area = null;
+	private List<FrameSnapshot> frames = List.of();
+	private boolean dirty = true;
+
+	/**
+	 * @param owner unique id of the only player seeing the minimap
+	 */
+	public HighlightMapRenderer(@NotNull UUID owner) {
+		super(true);
+		this.owner = owner;
+	}
+
+	/**
+	 * Set what to draw. Nothing is redrawn if both area and frames are unchanged.
+	 *
+	 * @param area   region shown on the map, or null to show nothing
+	 * @param frames frames to draw
+	 */
+	public void update(@Nullable BoundingBox area, @NotNull List<FrameSnapshot> frames) {
+		if (Objects.equals(area, this.area) && frames.equals(this.frames)) {
+			return;
+		}
+		this.area = area;
+		this.frames = frames;
+		this.dirty = true;
+	}
+
+	@Override
+	public void render(@NotNull MapView map, @NotNull MapCanvas canvas, @NotNull Player player) {
+		if (!dirty || !player.getUniqueId().equals(owner)) {
+			return;
+		}
+		dirty = false;
+
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				boolean edge = x == 0 || y == 0 || x == SIZE - 1 || y == SIZE - 1;
+				canvas.setPixel(x, y, edge ? BORDER : BACKGROUND);
+			}
+		}
+		if (area == null) {
+			return;
+		}
+
+		/* Keep the aspect ratio - the longer side of the area spans the whole map */
+		double span = Math.max(1, Math.max(area.getWidthX(), area.getWidthZ()));
+		double scale = (SIZE - 2) / span;
+		int dot = Math.max(1, (int) scale);
+		for (FrameSnapshot s : frames) {
+			int px = Math.max(1, 1 + (int) ((s.x() - area.getMinX()) * scale));
+			int py = Math.max(1, 1 + (int) ((s.z() - area.getMinZ()) * scale));
+			byte color = color(s);
+			for (int x = px; x < px + dot && x < SIZE - 1; x++) {
+				for (int y = py; y < py + dot && y < SIZE - 1; y++) {
+					canvas.setPixel(x, y, color);
+				}
+			}
+		}
+	}
+
+	private static byte color(FrameSnapshot s) {
+		for (FrameFilter filter : PRIORITY) {
+			if (filter.test(s)) {
+				return COLORS.get(filter);
+			}
+		}
+		return NEUTRAL;
+	}
+}
@@ -4,10 +4,13 @@ import me.cth451.paperframe.PaperFramePlugin;
 import org.bukkit.World;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Predicate;
 
 public class HighlightOptions implements Predicate<ItemFrame> {
@@ -19,9 +22,13 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 
 	/**
 	 * A list of filters to be applied on top of each other. An empty list is equivalent to a pass-all filter.
+	 * Must not be modified once frames have been tested against these options.
 	 */
 	public List<FrameFilter> filters;
 
+	/* Filters compiled on first use */
+	private volatile FrameFilterSet compiled = null;
+
 	/**
 	 * the range in which to find frames to highlight
 	 */
@@ -33,6 +40,29 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 	 */
 	public boolean worldedit = false;
 
+	/**
+	 * How highlighted frames are presented to the player
+	 */
+	public enum Mode {
+		/**
+		 * Dust particle wireframe around each frame
+		 */
+		PARTICLES,
+		/**
+		 * Per-player glowing outline sent as entity metadata - requires BKCommonLib
+		 */
+		GLOW,
+		/**
+		 * Top-down minimap drawn onto a map held by the player
+		 */
+		MAP,
+	}
+
+	/**
+	 * Presentation of highlighted frames
+	 */
+	public Mode mode = Mode.PARTICLES;
+
 	/**
 	 * Default frame-finding radius - maybe overridden from configuration
 	 */
@@ -63,6 +93,16 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 		this.range = range;
 	}
 
+	/**
+	 * Region around the player in which to find frames. Unused for WorldEdit based highlighting.
+	 *
+	 * @param player Initiating player
+	 * @return bounding box to search in
+	 */
+	public BoundingBox region(@NotNull Player player) {
+		return player.getBoundingBox().expand(range);
+	}
+
 	/**
 	 * Gather data source for highlighting.
 	 *
@@ -72,13 +112,9 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 	public List<ItemFrame> source(@NotNull Player player) {
 		World world = player.getWorld();
 		if (!worldedit)
-			return player.getNearbyEntities(range, range, range)
-			             .stream()
-			             .filter(ItemFrame.class::isInstance)
-			             .map(ItemFrame.class::cast)
-			             .toList();
+			return plugin.getFrameIndex().inBoundingBox(world, region(player));
 		if (plugin.getDependencyManager().isWorldEditAvailable(null)) {
-			return plugin.getDependencyManager().getCuboidSelection(player);
+			return plugin.getDependencyManager().getSelection(player);
 		} else {
 			return new LinkedList<>();
 		}
@@ -92,7 +128,56 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 	 */
 	@Override
 	public boolean test(ItemFrame frame) {
-		return this.filters.stream().map(f -> f.test(frame)).reduce((a, b) -> a && b).orElse(true);
+		return compiled().test(frame);
+	}
+
+	/**
+	 * Apply the list of filters to a snapshot of a candidate item frame. Safe to call off the main thread.
+	 *
+	 * @param frame snapshot of the item frame to check
+	 * @return whether this frame satisfies the criteria of the filter
+	 */
+	public boolean test(FrameSnapshot frame) {
+		return compiled().test(frame);
+	}
+
+	/**
+	 * @return filters compiled into a single short-circuiting predicate
+	 */
+	public FrameFilterSet compiled() {
+		FrameFilterSet set = this.compiled;
+		if (set == null) {
+			set = new FrameFilterSet(this.filters);
+			this.compiled = set;
+		}
+		return set;
+	}
+
+	/**
+	 * @return whether snapshots need to carry stacking information for these filters
+	 */
+	public boolean needsStacked() {
+		return compiled().contains(FrameFilter.STACKED);
+	}
+
+	/**
+	 * Options are equal if they find and present the same frames, regardless of the order filters were given in
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HighlightOptions that)) {
+			return false;
+		}
+		return Double.compare(that.range, range) == 0 && worldedit == that.worldedit && mode == that.mode
+				&& new HashSet<>(filters).equals(new HashSet<>(that.filters));
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(new HashSet<>(filters), range, worldedit, mode);
 	}
 
 	@Override
@@ -104,6 +189,11 @@ public class HighlightOptions implements Predicate<ItemFrame> {
 						: String.join(", ",
 						              filters.stream().map(FrameFilter::toString)
 						                     .toList());
-		return String.format("Highlighting within %s with filter %s", rangeDesc, filterDesc);
+		String modeDesc = switch (mode) {
+			case PARTICLES -> "";
+			case GLOW -> " using glowing outlines";
+			case MAP -> " onto the held map";
+		};
+		return String.format("Highlighting within %s with filter %s%s", rangeDesc, filterDesc, modeDesc);
 	}
 }
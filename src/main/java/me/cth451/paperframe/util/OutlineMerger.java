@@ -0,0 +1,171 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.ItemFrame;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Merges block faces lying in the same plane into the outline of their union, i.e. a wall of frames is drawn as its
+ * outer border instead of one box per frame. Edges shared by two neighboring faces cancel out and collinear edges are
+ * joined, so the number of particles scales with the perimeter of a wall instead of its area.
+ */
+public class OutlineMerger {
+	/**
+	 * One unit square on a block face
+	 *
+	 * @param x    x of the block
+	 * @param y    y of the block
+	 * @param z    z of the block
+	 * @param face face of the block, must be one of the 6 cartesian directions
+	 */
+	public record Face(int x, int y, int z, @NotNull BlockFace face) {
+		/**
+		 * @param frame item frame
+		 * @return the face of the supporting block the frame hangs on
+		 */
+		public static @NotNull Face of(@NotNull ItemFrame frame) {
+			Location loc = frame.getLocation();
+			BlockFace facing = frame.getFacing();
+			return new Face(loc.getBlockX() - facing.getModX(), loc.getBlockY() - facing.getModY(),
+			                loc.getBlockZ() - facing.getModZ(), facing);
+		}
+	}
+
+	/* Outlines are lifted off the block face by this much, about the middle of an item frame */
+	private static final double OFFSET = 1.0 / 32;
+
+	/* Faces of one plane: facing and coordinate along the face normal */
+	private record Plane(BlockFace face, int depth) {
+	}
+
+	/**
+	 * Compute the merged outline of faces
+	 *
+	 * @param faces   faces to outline - duplicates are ignored
+	 * @param spacing spacing between two particles
+	 * @return particle positions along the outline
+	 */
+	public static @NotNull DrawList outline(@NotNull Collection<Face> faces, double spacing) {
+		/* Group into planes, storing in-plane (u, v) cell coordinates */
+		HashMap<Plane, HashSet<Long>> planes = new HashMap<>();
+		for (Face f : faces) {
+			int[] c = {f.x(), f.y(), f.z()};
+			int n = normalAxis(f.face());
+			planes.computeIfAbsent(new Plane(f.face(), c[n]), k -> new HashSet<>())
+			      .add(pack(c[uAxis(n)], c[vAxis(n)]));
+		}
+
+		DrawList list = new DrawList(faces.size() * 8);
+		planes.forEach((plane, cells) -> outlinePlane(plane, cells, spacing, list));
+		return list;
+	}
+
+	private static void outlinePlane(Plane plane, HashSet<Long> cells, double spacing, DrawList list) {
+		/* Boundary edges of unit length, keyed by the line they lie on, valued by their start */
+		TreeMap<Integer, TreeSet<Integer>> alongU = new TreeMap<>();
+		TreeMap<Integer, TreeSet<Integer>> alongV = new TreeMap<>();
+		for (long cell : cells) {
+			int u = (int) (cell >> 32);
+			int v = (int) cell;
+			if (!cells.contains(pack(u, v - 1))) {
+				alongU.computeIfAbsent(v, k -> new TreeSet<>()).add(u);
+			}
+			if (!cells.contains(pack(u, v + 1))) {
+				alongU.computeIfAbsent(v + 1, k -> new TreeSet<>()).add(u);
+			}
+			if (!cells.contains(pack(u - 1, v))) {
+				alongV.computeIfAbsent(u, k -> new TreeSet<>()).add(v);
+			}
+			if (!cells.contains(pack(u + 1, v))) {
+				alongV.computeIfAbsent(u + 1, k -> new TreeSet<>()).add(v);
+			}
+		}
+
+		BlockFace face = plane.face();
+		int n = normalAxis(face);
+		boolean positive = face.getModX() + face.getModY() + face.getModZ() > 0;
+		double depth = positive ? plane.depth() + 1 + OFFSET : plane.depth() - OFFSET;
+
+		/*
+		 * Join consecutive unit edges on the same line into one segment. Every corner of the outline ends exactly one
+		 * segment along each axis, so segments along u carry their end points and segments along v leave them out.
+		 */
+		alongU.forEach((v, starts) -> joinRuns(starts, (from, to) -> line(list, n, depth, from, v, to, v, spacing, true)));
+		alongV.forEach((u, starts) -> joinRuns(starts, (from, to) -> line(list, n, depth, u, from, u, to, spacing, false)));
+	}
+
+	@FunctionalInterface
+	private interface Run {
+		void accept(int from, int to);
+	}
+
+	private static void joinRuns(TreeSet<Integer> starts, Run run) {
+		Integer from = null;
+		int end = 0;
+		for (int start : starts) {
+			if (from != null && start == end) {
+				end++;
+				continue;
+			}
+			if (from != null) {
+				run.accept(from, end);
+			}
+			from = start;
+			end = start + 1;
+		}
+		if (from != null) {
+			run.accept(from, end);
+		}
+	}
+
+	/**
+	 * Append points along a segment
+	 *
+	 * @param ends whether to include both end points, otherwise only the points in between are appended
+	 */
+	private static void line(DrawList list, int n, double depth, double u1, double v1, double u2, double v2,
+	                         double spacing, boolean ends) {
+		double[] p1 = new double[3];
+		double[] p2 = new double[3];
+		p1[n] = p2[n] = depth;
+		p1[uAxis(n)] = u1;
+		p1[vAxis(n)] = v1;
+		p2[uAxis(n)] = u2;
+		p2[vAxis(n)] = v2;
+		double distance = Math.abs(u2 - u1) + Math.abs(v2 - v1);
+		int count = (int) Math.ceil(distance / spacing);
+		int first = ends ? 0 : 1;
+		int last = ends ? count : count - 1;
+		for (int i = first; i <= last; i++) {
+			double t = (double) i / count;
+			list.add(p1[0] + (p2[0] - p1[0]) * t, p1[1] + (p2[1] - p1[1]) * t, p1[2] + (p2[2] - p1[2]) * t);
+		}
+	}
+
+	/**
+	 * @return 0, 1, 2 for x, y, z
+	 */
+	private static int normalAxis(BlockFace face) {
+		return switch (face) {
+			case EAST, WEST -> 0;
+			case UP, DOWN -> 1;
+			case NORTH, SOUTH -> 2;
+			default -> throw new IllegalArgumentException("Unsupported face: " + face);
+		};
+	}
+
+	private static int uAxis(int normal) {
+		return normal == 0 ? 1 : 0;
+	}
+
+	private static int vAxis(int normal) {
+		return normal == 2 ? 1 : 2;
+	}
+
+	private static long pack(int u, int v) {
+		return (long) u << 32 | (v & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,103 @@
+package me.cth451.paperframe.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of timestamped samples, summarized as percentiles over a trailing time window. Once the ring is full,
+ * the oldest samples are overwritten even if they are still within the window.
+ * <p>
+ * Thread safe - samples are usually recorded on the main thread and read from command handlers or other plugins.
+ */
+public class RollingSeries {
+	/**
+	 * Summary of samples within the window
+	 *
+	 * @param count     number of samples
+	 * @param p50       median
+	 * @param p95       95th percentile
+	 * @param p99       99th percentile
+	 * @param max       largest sample
+	 * @param spanNanos time between the oldest sample and the end of the window - shorter than the window if the ring
+	 *                  has overwritten samples still within it
+	 */
+	public record Percentiles(int count, long p50, long p95, long p99, long max, long spanNanos) {
+		public static final Percentiles EMPTY = new Percentiles(0, 0, 0, 0, 0, 0);
+	}
+
+	private final long windowNanos;
+	private final long[] values;
+	private final long[] times;
+	/* Index of the next slot to write */
+	private int head = 0;
+	private int size = 0;
+
+	/**
+	 * @param capacity    maximum number of samples kept
+	 * @param windowNanos length of the trailing window in nanoseconds
+	 */
+	public RollingSeries(int capacity, long windowNanos) {
+		this.values = new long[capacity];
+		this.times = new long[capacity];
+		this.windowNanos = windowNanos;
+	}
+
+	/**
+	 * Record a sample taken now
+	 *
+	 * @param value sample value
+	 */
+	public void record(long value) {
+		record(value, System.nanoTime());
+	}
+
+	/**
+	 * Record a sample
+	 *
+	 * @param value sample value
+	 * @param now   time of the sample as returned by {@link System#nanoTime()}
+	 */
+	public synchronized void record(long value, long now) {
+		values[head] = value;
+		times[head] = now;
+		head = (head + 1) % values.length;
+		size = Math.min(size + 1, values.length);
+	}
+
+	/**
+	 * @return percentiles of the samples within the window ending now
+	 */
+	public Percentiles percentiles() {
+		return percentiles(System.nanoTime());
+	}
+
+	/**
+	 * @param now end of the window as returned by {@link System#nanoTime()}
+	 * @return percentiles of the samples within the window
+	 */
+	public synchronized Percentiles percentiles(long now) {
+		long[] window = new long[size];
+		int count = 0;
+		long span = 0;
+		for (int i = 0; i < size; i++) {
+			long age = now - times[i];
+			if (age <= windowNanos) {
+				window[count++] = values[i];
+				span = Math.max(span, age);
+			}
+		}
+		if (count == 0) {
+			return Percentiles.EMPTY;
+		}
+		Arrays.sort(window, 0, count);
+		return new Percentiles(count, rank(window, count, 50), rank(window, count, 95), rank(window, count, 99),
+		                       window[count - 1], span);
+	}
+
+	/**
+	 * Nearest-rank percentile of sorted samples
+	 */
+	private static long rank(long[] sorted, int count, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+		return sorted[Math.max(0, index)];
+	}
+}
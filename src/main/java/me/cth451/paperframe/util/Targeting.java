@@ -4,18 +4,20 @@ import com.destroystokyo.paper.block.TargetBlockInfo;
 import me.cth451.paperframe.PaperFramePlugin;
 import me.cth451.paperframe.util.exceptions.InvalidFrameCountException;
 import me.cth451.paperframe.util.exceptions.InvalidFrameCountExceptionBuilder;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 
 public class Targeting {
@@ -39,16 +41,7 @@ public class Targeting {
 	 * @return ONE OF the item frames player is looking at.
 	 */
 	public static ItemFrame byTargetedEntity(@NotNull Player player) {
-		Entity entity = player.getTargetEntity(SELECTION_RANGE);
-		if (entity == null) {
-			return null;
-		}
-
-		if (!(entity instanceof ItemFrame frame)) {
-			return null;
-		}
-
-		return frame;
+		return rayTraceFrame(player);
 	}
 
 	/**
@@ -61,21 +54,51 @@ public class Targeting {
 	 */
 	public static List<ItemFrame> byTargetedStackedEntity(@NotNull Player player) {
 		/* Find one first */
-		Entity entity = player.getTargetEntity(SELECTION_RANGE);
-
-		if (entity == null) {
+		ItemFrame frame = rayTraceFrame(player);
+		if (frame == null) {
 			return Collections.emptyList();
 		}
 
-		if (!(entity instanceof ItemFrame frame)) {
-			return Collections.emptyList();
-		}
+		/* The rest of the stack shares its block and facing */
+		Location loc = frame.getLocation();
+		return plugin.getFrameIndex().inBlockFace(frame.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(),
+		                                          frame.getFacing());
+	}
 
-		/* Find all in the same region */
-		return frame.getWorld()
-		            .getNearbyEntitiesByType(ItemFrame.class, frame.getLocation(), 0.015625d)
-		            .stream()
-		            .toList();
+	/**
+	 * Find the nearest item frame along the line of sight of a player, up to {@link Targeting#SELECTION_RANGE} blocks
+	 * away. Blocks along the ray are walked with {@link VoxelRay} and only frames indexed in those blocks are tested,
+	 * instead of ray tracing against all nearby entities. The ray stops at the first block that is not passable.
+	 *
+	 * @param player the player to check
+	 * @return item frame, or null if there is none in sight
+	 */
+	private static @Nullable ItemFrame rayTraceFrame(@NotNull Player player) {
+		final Location eye = player.getEyeLocation();
+		final Vector start = eye.toVector();
+		final Vector direction = eye.getDirection();
+		final World world = player.getWorld();
+		final FrameIndex index = plugin.getFrameIndex();
+		final ItemFrame[] hit = {null};
+
+		VoxelRay.Visitor visitor = (x, y, z) -> {
+			double nearest = Double.POSITIVE_INFINITY;
+			for (ItemFrame frame : index.inBlock(world, x, y, z)) {
+				RayTraceResult result = frame.getBoundingBox().rayTrace(start, direction, SELECTION_RANGE);
+				if (result == null) {
+					continue;
+				}
+				double distance = result.getHitPosition().distanceSquared(start);
+				if (distance < nearest) {
+					nearest = distance;
+					hit[0] = frame;
+				}
+			}
+			return hit[0] != null || !world.getBlockAt(x, y, z).isPassable();
+		};
+		VoxelRay.traverse(start.getX(), start.getY(), start.getZ(), direction.getX(), direction.getY(),
+		                  direction.getZ(), SELECTION_RANGE, visitor);
+		return hit[0];
 	}
 
 	/**
@@ -101,17 +124,32 @@ public class Targeting {
 	}
 
 	/**
-	 * Find all item frame that is contained in a bounding box
+	 * Find all item frame that is contained in a bounding box. Only chunks overlapping the box are visited via
+	 * {@link FrameIndex}.
 	 *
 	 * @param boundingBox box
 	 * @param world       world to search in
 	 * @return a list of item frames that exist on that block face. The returned list is unmodifiable.
 	 */
 	public static List<ItemFrame> byBoundingBox(@NotNull BoundingBox boundingBox, @NotNull World world) {
-		return world.getEntitiesByClass(ItemFrame.class)
-		            .stream()
-		            .filter(e -> boundingBox.contains(e.getLocation().toVector()))
-		            .toList();
+		return Collections.unmodifiableList(plugin.getFrameIndex().inBoundingBox(world, boundingBox));
+	}
+
+	/**
+	 * Find all item frames contained in each of many bounding boxes. Chunks are visited once for all boxes, so this is
+	 * cheaper than calling {@link Targeting#byBoundingBox} per box when boxes are close to each other.
+	 *
+	 * @param boundingBoxes boxes
+	 * @param world         world to search in
+	 * @return for each box in the given order, a list of item frames within that box. The returned lists are
+	 * unmodifiable.
+	 */
+	public static List<List<ItemFrame>> byBoundingBoxes(@NotNull List<BoundingBox> boundingBoxes,
+	                                                    @NotNull World world) {
+		return plugin.getFrameIndex().inBoundingBoxes(world, boundingBoxes)
+		             .stream()
+		             .map(Collections::unmodifiableList)
+		             .toList();
 	}
 
 	/**
@@ -123,15 +161,10 @@ public class Targeting {
 	 * unmodifiable.
 	 */
 	public static List<ItemFrame> byAttachedBlockFace(@NotNull Block block, @NotNull BlockFace face) {
+		/* Frames are indexed by the block they are in, a single bucket lookup regardless of how many frames exist */
 		final Block containingBlock = block.getRelative(face);
-		final BoundingBox containingBox =
-				new BoundingBox(containingBlock.getX(), containingBlock.getY(), containingBlock.getZ(),
-				                containingBlock.getX() + 1, containingBlock.getY() + 1, containingBlock.getZ() + 1);
-		final BlockFace fFace = face;
-		return byBoundingBox(containingBox, block.getWorld())
-				.stream()
-				.filter(e -> e.getFacing() == fFace)
-				.toList();
+		return plugin.getFrameIndex().inBlockFace(block.getWorld(), containingBlock.getX(), containingBlock.getY(),
+		                                          containingBlock.getZ(), face);
 	}
 
 	/**
@@ -142,11 +175,11 @@ public class Targeting {
 	 * @return the list of item frames within WorldEdit selection range (maybe empty), or null if and only WE is not
 	 * active.
 	 */
-	public static List<ItemFrame> byWorldEditCuboid(@NotNull Player player) {
+	public static List<ItemFrame> byWorldEditSelection(@NotNull Player player) {
 		if (!plugin.getDependencyManager().isWorldEditAvailable(null)) {
 			return Collections.emptyList();
 		} else {
-			return plugin.getDependencyManager().getCuboidSelection(player, true);
+			return plugin.getDependencyManager().getSelection(player, true);
 		}
 	}
 
@@ -154,6 +187,9 @@ public class Targeting {
 	 * Selects a rectangle of frames with top-left corner under cursor. All frames must already exist.
 	 * <p>
 	 * Multiple frames on the same face will cause an error.
+	 * <p>
+	 * Frames in front of the whole rectangle are fetched with a single index query and bucketed into a width x height
+	 * grid by containing block, so large walls resolve in one pass.
 	 *
 	 * @param topLeftBackingBlock targeted block
 	 * @param face                targeted face
@@ -209,19 +245,48 @@ public class Targeting {
 			throw new IllegalArgumentException("UP/DOWN faces are not supported (yet)");
 		}
 
-		/* Now figure out top left corner and lay things out in order */
+		/* Fetch frames in front of the whole rectangle in one query */
+		final BlockFace right = PlanarVec.translate(face, PlanarVec.RIGHT);
+		final BlockFace down = PlanarVec.translate(face, PlanarVec.DOWN);
+		final Block topLeft = topLeftBackingBlock.getRelative(face);
+		final Block bottomRight = topLeft.getRelative(right, width - 1).getRelative(down, height - 1);
+		final BoundingBox volume = BoundingBox.of(topLeft, bottomRight);
+		List<ItemFrame> candidates = plugin.getFrameIndex().inBoundingBox(topLeft.getWorld(), volume);
+
+		/* Bucket them into cells of the grid by containing block */
+		ItemFrame[] grid = new ItemFrame[width * height];
+		int[] counts = new int[width * height];
+		for (ItemFrame frame : candidates) {
+			if (frame.getFacing() != face) {
+				continue;
+			}
+			Location loc = frame.getLocation();
+			int dx = loc.getBlockX() - topLeft.getX();
+			int dy = loc.getBlockY() - topLeft.getY();
+			int dz = loc.getBlockZ() - topLeft.getZ();
+			int col = dx * right.getModX() + dz * right.getModZ();
+			int row = dy * down.getModY();
+			int depth = dx * face.getModX() + dz * face.getModZ();
+			if (depth != 0 || col < 0 || col >= width || row < 0 || row >= height) {
+				/* On the border of the volume but in a neighboring block */
+				continue;
+			}
+			int cell = row * width + col;
+			grid[cell] = frame;
+			counts[cell]++;
+		}
+
+		/* Now lay things out in order, top left corner first */
 		InvalidFrameCountExceptionBuilder builder = new InvalidFrameCountExceptionBuilder();
-		List<ItemFrame> targets = new LinkedList<>();
+		List<ItemFrame> targets = new ArrayList<>(width * height);
 		for (int row = 0; row < height; row++) {
 			for (int col = 0; col < width; col++) {
-				Block local_block = topLeftBackingBlock
-						.getRelative(PlanarVec.translate(face, PlanarVec.RIGHT), col)
-						.getRelative(PlanarVec.translate(face, PlanarVec.DOWN), row);
-				List<ItemFrame> local_frames = byAttachedBlockFace(local_block, face);
-				if (local_frames.size() != 1) {
-					builder.addBadFace(local_block, face, local_frames.size());
+				int cell = row * width + col;
+				if (counts[cell] != 1) {
+					Block local_block = topLeftBackingBlock.getRelative(right, col).getRelative(down, row);
+					builder.addBadFace(local_block, face, counts[cell]);
 				} else {
-					targets.addAll(local_frames);
+					targets.add(grid[cell]);
 				}
 			}
 		}
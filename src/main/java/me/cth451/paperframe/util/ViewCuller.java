@@ -0,0 +1,126 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Decides which outlines are worth drawing to a player:
+ * <ul>
+ *     <li>groups outside the view cone around the player's looking direction are skipped,</li>
+ *     <li>optionally, groups whose center cannot be seen from the player's eyes are skipped.</li>
+ * </ul>
+ * Line of sight results are cached per group key while the player's eyes stay in the same block, and for a limited
+ * number of ticks so that placed or broken blocks are eventually picked up. Since the check runs every time outlines
+ * are drawn, culled frames show up again as soon as they come into view.
+ * <p>
+ * Must only be used on the main thread.
+ */
+public class ViewCuller implements DrawList.GroupFilter {
+	/**
+	 * Default full angle of the view cone in degrees - maybe overridden from configuration
+	 */
+	public static final double DEFAULT_VIEW_CONE_ANGLE = 140;
+	/**
+	 * Whether line of sight is checked by default - maybe overridden from configuration
+	 */
+	public static final boolean DEFAULT_OCCLUSION_CULLING = false;
+	/**
+	 * Default number of ticks a line of sight check is reused for - maybe overridden from configuration
+	 */
+	public static final int DEFAULT_OCCLUSION_CACHE_TICKS = 20;
+
+	/* Groups closer than this are always drawn, the player may be standing right in front of them */
+	private static final double ALWAYS_VISIBLE_DISTANCE = 1.5;
+	/* Hits this close to the target are considered the target itself */
+	private static final double HIT_TOLERANCE = 0.125;
+
+	/* View of the player as of the last update */
+	private World world;
+	private double eyeX, eyeY, eyeZ;
+	private double dirX, dirY, dirZ;
+	private double coneCos = -1;
+	private boolean occlusion = false;
+
+	/* Line of sight results by group key, valid for the eye position below */
+	private final HashMap<Long, Boolean> visible = new HashMap<>();
+	private UUID cachedWorld = null;
+	private long cachedEyeBlock = 0;
+	private int cachedTick = 0;
+
+	/**
+	 * Capture the player's current view. Call this every time before drawing.
+	 *
+	 * @param player     viewer
+	 * @param coneAngle  full angle of the view cone in degrees - 360 or above disables the cone check
+	 * @param occlusion  whether to check line of sight
+	 * @param cacheTicks number of ticks line of sight results are reused for
+	 */
+	public void update(@NotNull Player player, double coneAngle, boolean occlusion, int cacheTicks) {
+		Location eye = player.getEyeLocation();
+		Vector direction = eye.getDirection();
+		this.world = eye.getWorld();
+		this.eyeX = eye.getX();
+		this.eyeY = eye.getY();
+		this.eyeZ = eye.getZ();
+		this.dirX = direction.getX();
+		this.dirY = direction.getY();
+		this.dirZ = direction.getZ();
+		this.coneCos = coneAngle >= 360 ? -1 : Math.cos(Math.toRadians(coneAngle / 2));
+		this.occlusion = occlusion;
+
+		if (!occlusion) {
+			visible.clear();
+			return;
+		}
+		UUID worldId = world.getUID();
+		long eyeBlock = FrameIndex.blockKey(eye);
+		int now = Bukkit.getCurrentTick();
+		if (!worldId.equals(cachedWorld) || eyeBlock != cachedEyeBlock || now - cachedTick >= cacheTicks) {
+			visible.clear();
+			cachedWorld = worldId;
+			cachedEyeBlock = eyeBlock;
+			cachedTick = now;
+		}
+	}
+
+	@Override
+	public boolean test(long key, double x, double y, double z) {
+		double dx = x - eyeX;
+		double dy = y - eyeY;
+		double dz = z - eyeZ;
+		double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (distance < ALWAYS_VISIBLE_DISTANCE) {
+			return true;
+		}
+		if ((dx * dirX + dy * dirY + dz * dirZ) / distance < coneCos) {
+			return false;
+		}
+		if (!occlusion) {
+			return true;
+		}
+		return visible.computeIfAbsent(key, k -> lineOfSight(dx, dy, dz, distance));
+	}
+
+	private boolean lineOfSight(double dx, double dy, double dz, double distance) {
+		Vector direction = new Vector(dx / distance, dy / distance, dz / distance);
+		RayTraceResult hit = world.rayTraceBlocks(new Location(world, eyeX, eyeY, eyeZ), direction, distance,
+		                                          FluidCollisionMode.NEVER, true);
+		if (hit == null) {
+			return true;
+		}
+		Vector position = hit.getHitPosition();
+		double hx = position.getX() - eyeX;
+		double hy = position.getY() - eyeY;
+		double hz = position.getZ() - eyeZ;
+		return Math.sqrt(hx * hx + hy * hy + hz * hz) >= distance - HIT_TOLERANCE;
+	}
+}
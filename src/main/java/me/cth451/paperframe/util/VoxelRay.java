@@ -0,0 +1,95 @@
+package me.cth451.paperframe.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Voxel traversal of a ray (Amanatides &amp; Woo): visits every block the ray passes through, in order, stepping from
+ * one block boundary to the next instead of sampling along the ray.
+ */
+public class VoxelRay {
+	/**
+	 * Called for each block along the ray
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+		/**
+		 * @param x block x
+		 * @param y block y
+		 * @param z block z
+		 * @return true to stop the traversal at this block
+		 */
+		boolean visit(int x, int y, int z);
+	}
+
+	/**
+	 * Visit blocks along a ray, starting with the block containing the origin
+	 *
+	 * @param ox          origin x
+	 * @param oy          origin y
+	 * @param oz          origin z
+	 * @param dx          direction x
+	 * @param dy          direction y
+	 * @param dz          direction z
+	 * @param maxDistance distance after which the traversal ends
+	 * @param visitor     block visitor
+	 * @return whether the visitor stopped the traversal
+	 */
+	public static boolean traverse(double ox, double oy, double oz, double dx, double dy, double dz,
+	                               double maxDistance, @NotNull Visitor visitor) {
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (length == 0) {
+			return visitor.visit((int) Math.floor(ox), (int) Math.floor(oy), (int) Math.floor(oz));
+		}
+		dx /= length;
+		dy /= length;
+		dz /= length;
+
+		int x = (int) Math.floor(ox);
+		int y = (int) Math.floor(oy);
+		int z = (int) Math.floor(oz);
+		int stepX = (int) Math.signum(dx);
+		int stepY = (int) Math.signum(dy);
+		int stepZ = (int) Math.signum(dz);
+		/* Distance along the ray to the next boundary on each axis, and between two boundaries */
+		double tMaxX = boundary(ox, x, dx);
+		double tMaxY = boundary(oy, y, dy);
+		double tMaxZ = boundary(oz, z, dz);
+		double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dx);
+		double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dy);
+		double tDeltaZ = dz == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dz);
+
+		while (true) {
+			if (visitor.visit(x, y, z)) {
+				return true;
+			}
+			if (tMaxX <= tMaxY && tMaxX <= tMaxZ) {
+				if (tMaxX > maxDistance) {
+					return false;
+				}
+				x += stepX;
+				tMaxX += tDeltaX;
+			} else if (tMaxY <= tMaxZ) {
+				if (tMaxY > maxDistance) {
+					return false;
+				}
+				y += stepY;
+				tMaxY += tDeltaY;
+			} else {
+				if (tMaxZ > maxDistance) {
+					return false;
+				}
+				z += stepZ;
+				tMaxZ += tDeltaZ;
+			}
+		}
+	}
+
+	private static double boundary(double origin, int block, double direction) {
+		if (direction > 0) {
+			return (block + 1 - origin) / direction;
+		} else if (direction < 0) {
+			return (origin - block) / -direction;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+}
@@ -0,0 +1,122 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Particle.DustOptions;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed particle positions along the 12 edges of a box of a given size, relative to its min corner. Drawing a
+ * template only translates these offsets and allocates nothing.
+ * <p>
+ * Templates are cached by size and spacing - sizes are rounded to {@link WireframeTemplate#SIZE_RESOLUTION} so that
+ * floating point noise in bounding boxes does not defeat the cache. Item frames only come in a handful of sizes, so the
+ * cache stays small. Templates are immutable and the cache is safe to use from any thread.
+ */
+public class WireframeTemplate {
+	/**
+	 * Particle spacing used by {@link Drawing#drawBoundingBox}
+	 */
+	public static final double DEFAULT_SPACING = 0.5;
+
+	/**
+	 * Box sizes are rounded to multiples of this
+	 */
+	public static final double SIZE_RESOLUTION = 1.0 / 1024;
+
+	/* Upper bound on cached templates - unusual sizes beyond this are built on every request */
+	private static final int CACHE_LIMIT = 64;
+	private static volatile WireframeTemplate[] cache = new WireframeTemplate[0];
+
+	private final double sizeX, sizeY, sizeZ, spacing;
+
+	/* x, y, z offsets of each point from the min corner */
+	private final double[] offsets;
+
+	private WireframeTemplate(double sizeX, double sizeY, double sizeZ, double spacing) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		this.spacing = spacing;
+		DrawList points = new DrawList(64);
+		points.addBox(0, 0, 0, sizeX, sizeY, sizeZ, spacing);
+		this.offsets = points.toArray();
+	}
+
+	/**
+	 * Look up the template for a box size, creating and caching it if needed
+	 *
+	 * @param sizeX   box size along x
+	 * @param sizeY   box size along y
+	 * @param sizeZ   box size along z
+	 * @param spacing spacing between two particles
+	 * @return template
+	 */
+	public static @NotNull WireframeTemplate of(double sizeX, double sizeY, double sizeZ, double spacing) {
+		double x = round(sizeX);
+		double y = round(sizeY);
+		double z = round(sizeZ);
+		for (WireframeTemplate t : cache) {
+			if (t.sizeX == x && t.sizeY == y && t.sizeZ == z && t.spacing == spacing) {
+				return t;
+			}
+		}
+		return create(x, y, z, spacing);
+	}
+
+	private static synchronized WireframeTemplate create(double x, double y, double z, double spacing) {
+		/* Another thread may have created it meanwhile */
+		for (WireframeTemplate t : cache) {
+			if (t.sizeX == x && t.sizeY == y && t.sizeZ == z && t.spacing == spacing) {
+				return t;
+			}
+		}
+		WireframeTemplate template = new WireframeTemplate(x, y, z, spacing);
+		if (cache.length < CACHE_LIMIT) {
+			WireframeTemplate[] grown = Arrays.copyOf(cache, cache.length + 1);
+			grown[cache.length] = template;
+			cache = grown;
+		}
+		return template;
+	}
+
+	private static double round(double size) {
+		return Math.rint(size / SIZE_RESOLUTION) * SIZE_RESOLUTION;
+	}
+
+	/**
+	 * @return number of points in this template
+	 */
+	public int size() {
+		return offsets.length / 3;
+	}
+
+	/**
+	 * Spawn the outline with its min corner at a given position
+	 *
+	 * @param sink    where particles are sent
+	 * @param options redstone dust particle options
+	 * @param x       min x of the box
+	 * @param y       min y of the box
+	 * @param z       min z of the box
+	 */
+	public void draw(@NotNull Drawing.ParticleSink sink, DustOptions options, double x, double y, double z) {
+		for (int i = 0; i < offsets.length; i += 3) {
+			sink.spawn(x + offsets[i], y + offsets[i + 1], z + offsets[i + 2], options);
+		}
+	}
+
+	/**
+	 * Append the outline with its min corner at a given position to a draw list
+	 *
+	 * @param list draw list to append to
+	 * @param x    min x of the box
+	 * @param y    min y of the box
+	 * @param z    min z of the box
+	 */
+	public void appendTo(@NotNull DrawList list, double x, double y, double z) {
+		for (int i = 0; i < offsets.length; i += 3) {
+			list.add(x + offsets[i], y + offsets[i + 1], z + offsets[i + 2]);
+		}
+	}
+}
@@ -2,16 +2,21 @@ package me.cth451.paperframe.util.exceptions;
 
 import me.cth451.paperframe.PaperFramePlugin;
 import me.cth451.paperframe.util.Drawing;
+import me.cth451.paperframe.util.OutlineMerger;
 import me.cth451.paperframe.util.Targeting;
 import org.bukkit.Color;
 import org.bukkit.Particle;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Exception thrown when more than 1 or 0 frame are stacked in the same spot.
@@ -41,11 +46,29 @@ public class InvalidFrameCountException extends RuntimeException {
 		                     this.badFaces.size());
 	}
 
+	/**
+	 * Outline offending faces: white where there are too many frames, red where there are none. Adjacent faces are
+	 * merged into one outline.
+	 *
+	 * @param plugin plugin instance
+	 */
 	public void scheduleStickyDraw(PaperFramePlugin plugin) {
-		this.badFaces.forEach((bf) -> {
-			Particle.DustOptions drawOptions = new Particle.DustOptions(bf.frameCount > 1 ? Color.WHITE : Color.RED,
-			                                                            1.0f);
-			Drawing.scheduleStickyDraw(plugin, () -> Drawing.drawBoundingBox(bf.block, drawOptions), 5, 10);
+		if (this.badFaces.isEmpty()) {
+			return;
+		}
+		World world = this.badFaces.getFirst().block.getWorld();
+		Map<Boolean, List<OutlineMerger.Face>> byCrowded =
+				this.badFaces.stream().collect(Collectors.partitioningBy(
+						bf -> bf.frameCount > 1,
+						Collectors.mapping(bf -> new OutlineMerger.Face(bf.block.getX(), bf.block.getY(),
+						                                                bf.block.getZ(), bf.face),
+						                   Collectors.toList())));
+		byCrowded.forEach((crowded, faces) -> {
+			if (faces.isEmpty()) {
+				return;
+			}
+			Particle.DustOptions drawOptions = new Particle.DustOptions(crowded ? Color.WHITE : Color.RED, 1.0f);
+			Drawing.scheduleStickyMergedOutline(plugin, faces, world, drawOptions, 5, 10);
 		});
 	}
 }
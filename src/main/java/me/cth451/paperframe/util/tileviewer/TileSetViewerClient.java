@@ -91,53 +91,6 @@ public class TileSetViewerClient {
 		return metadata;
 	}
 
-	/**
-	 * Schedule a background refresh of specified tileset. Note that network operation is intentionally forked
-	 * to background as minecraft command execution is synchronous.
-	 *
-	 * @param plugin         reference to local plugin
-	 * @param groupPath      tileset path
-	 * @param notifyCallback notification callback - boolean = success or not, String = message
-	 */
-	public void scheduleMetadataFetch(@NotNull PaperFramePlugin plugin,
-	                                  @NotNull String groupPath,
-	                                  final BiConsumer<Boolean, String> notifyCallback) {
-		new Thread(() -> {
-			if (getEndpointBase() == null) {
-				plugin.getComponentLogger().error(uninitializedError);
-				Bukkit.getScheduler()
-				      .scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(false, uninitializedError));
-			}
-			try {
-				getMetadata(groupPath);
-			} catch (IllegalStateException e) {
-				plugin.getComponentLogger().error("API is not ready", e);
-				Bukkit.getScheduler()
-				      .scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(false, e.getMessage()));
-				return;
-			} catch (FileNotFoundException e) {
-				Bukkit.getScheduler()
-				      .scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(false, e.getMessage()));
-				return;
-			} catch (IOException e) {
-				plugin.getComponentLogger().error("Network Error", e);
-				Bukkit.getScheduler()
-				      .scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(false, e.getMessage()));
-				return;
-			} catch (RuntimeException e) {
-				plugin.getComponentLogger().error("Internal Error", e);
-				Bukkit.getScheduler()
-				      .scheduleSyncDelayedTask(plugin,
-				                               () -> notifyCallback.accept(false,
-				                                                           "Internal error occurred - please check server logs"));
-				return;
-			}
-			String message = String.format("Metadata for tileset %s downloaded. Please try again.", groupPath);
-			plugin.getComponentLogger().info("Metadata for tileset {} downloaded and cached", groupPath);
-			Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(true, message));
-		}).start();
-	}
-
 	/**
 	 * Call /api/v1/group/[path] - result will be returned stored in cache
 	 *
@@ -199,6 +152,47 @@ public class TileSetViewerClient {
 		return metadata;
 	}
 
+	/**
+	 * Schedule a background refresh of specified tileset. The download itself is {@link #getMetadata(String)} run on
+	 * an async task; the callback is invoked on the main thread.
+	 *
+	 * @param plugin         reference to local plugin
+	 * @param groupPath      tileset path
+	 * @param notifyCallback notification callback - boolean = success or not, String = message
+	 * @deprecated commands download missing metadata while preparing off the main thread, see
+	 * {@link me.cth451.paperframe.command.base.PreparedCommandExecutor}. Call {@link #getMetadata(String)} from an
+	 * async task instead.
+	 */
+	@Deprecated
+	public void scheduleMetadataFetch(@NotNull PaperFramePlugin plugin,
+	                                  @NotNull String groupPath,
+	                                  final BiConsumer<Boolean, String> notifyCallback) {
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			boolean success = false;
+			String message;
+			try {
+				getMetadata(groupPath);
+				success = true;
+				message = String.format("Metadata for tileset %s downloaded. Please try again.", groupPath);
+				plugin.getComponentLogger().info("Metadata for tileset {} downloaded and cached", groupPath);
+			} catch (IllegalStateException e) {
+				plugin.getComponentLogger().error("API is not ready", e);
+				message = e.getMessage();
+			} catch (FileNotFoundException e) {
+				message = e.getMessage();
+			} catch (IOException e) {
+				plugin.getComponentLogger().error("Network Error", e);
+				message = e.getMessage();
+			} catch (RuntimeException e) {
+				plugin.getComponentLogger().error("Internal Error", e);
+				message = "Internal error occurred - please check server logs";
+			}
+			final boolean result = success;
+			final String notification = message;
+			Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, () -> notifyCallback.accept(result, notification));
+		});
+	}
+
 	/**
 	 * Call /api/v1/list-groups/[path] - result will be returned and stored in cache
 	 *
@@ -0,0 +1,149 @@
+package me.cth451.paperframe.bench;
+
+import me.cth451.paperframe.util.FrameFilter;
+import me.cth451.paperframe.util.FrameFilterSet;
+import me.cth451.paperframe.util.FrameIndex;
+import me.cth451.paperframe.util.FrameSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the stream based filter evaluation formerly used by HighlightOptions with {@link FrameFilterSet}.
+ * <p>
+ * {@code streamReduce} and {@code compiledSet} run on snapshots, where STACKED is a flag. The live frame path cannot
+ * run outside a server, so {@code streamReduceLive} and {@code costOrderedLive} model it on the snapshots instead:
+ * STACKED is answered by a radius query against a stub block index, standing in for the getNearbyEntitiesByType call
+ * the old path made for every frame. {@code costOrderedLive} mirrors the loop of
+ * {@link FrameFilterSet#test(org.bukkit.entity.ItemFrame)} rather than calling it. The numbers compare evaluation
+ * strategies on a model and are not before / after measurements of the plugin.
+ * <p>
+ * Run {@link FrameFilterBenchmark#main} from the test classpath, i.e. from an IDE after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameFilterBenchmark {
+	@Param({"hidden", "hidden,stacked", "protected,empty,stacked"})
+	public String filterNames;
+
+	private List<FrameFilter> filters;
+	private FrameFilterSet compiled;
+	private FrameSnapshot[] frames;
+	private FrameFilter[] ordered;
+	/* Stub spatial index: frames by containing block */
+	private HashMap<Long, List<FrameSnapshot>> blocks;
+
+	@Setup
+	public void setup() {
+		filters = Arrays.stream(filterNames.split(",")).map(n -> FrameFilter.valueOf(n.toUpperCase())).toList();
+		compiled = new FrameFilterSet(filters);
+		ordered = EnumSet.copyOf(filters).stream()
+		                 .sorted(Comparator.comparingInt(f -> f.cost))
+		                 .toArray(FrameFilter[]::new);
+
+		Random random = new Random(451);
+		frames = new FrameSnapshot[10000];
+		blocks = new HashMap<>();
+		int x = 0;
+		for (int i = 0; i < frames.length; i++) {
+			/* About one in eight frames is stacked onto the previous one */
+			boolean stacked = i > 0 && random.nextInt(8) == 0;
+			if (!stacked) {
+				x = i;
+			}
+			long blockKey = FrameIndex.blockKey(x, 64, 0);
+			frames[i] = new FrameSnapshot(i, x + 0.5, 64.5, 0.03125, blockKey, BlockFace.NORTH,
+			                              random.nextInt(4) == 0, random.nextInt(4) != 0,
+			                              random.nextBoolean() ? Material.AIR : Material.FILLED_MAP, 1,
+			                              stacked,
+			                              x, 64, 0, x + 0.75, 64.75, 0.0625);
+			blocks.computeIfAbsent(blockKey, k -> new ArrayList<>(1)).add(frames[i]);
+		}
+	}
+
+	/**
+	 * Stand-in for the per frame spatial query of the old STACKED filter
+	 */
+	private int nearby(FrameSnapshot frame, double radius) {
+		List<FrameSnapshot> found = new ArrayList<>();
+		for (FrameSnapshot other : blocks.getOrDefault(frame.blockKey(), List.of())) {
+			if (Math.abs(other.x() - frame.x()) <= radius && Math.abs(other.y() - frame.y()) <= radius
+			    && Math.abs(other.z() - frame.z()) <= radius) {
+				found.add(other);
+			}
+		}
+		return found.size();
+	}
+
+	private boolean testLive(FrameFilter filter, FrameSnapshot frame) {
+		return switch (filter) {
+			case STACKED -> nearby(frame, 0.015625d) > 1;
+			default -> filter.test(frame);
+		};
+	}
+
+	@Benchmark
+	public int streamReduce() {
+		int passed = 0;
+		for (FrameSnapshot frame : frames) {
+			if (filters.stream().map(f -> f.test(frame)).reduce((a, b) -> a && b).orElse(true)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	@Benchmark
+	public int compiledSet() {
+		int passed = 0;
+		for (FrameSnapshot frame : frames) {
+			if (compiled.test(frame)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	@Benchmark
+	public int streamReduceLive() {
+		int passed = 0;
+		for (FrameSnapshot frame : frames) {
+			if (filters.stream().map(f -> testLive(f, frame)).reduce((a, b) -> a && b).orElse(true)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	@Benchmark
+	public int costOrderedLive() {
+		int passed = 0;
+		for (FrameSnapshot frame : frames) {
+			boolean pass = true;
+			for (FrameFilter f : ordered) {
+				if (!testLive(f, frame)) {
+					pass = false;
+					break;
+				}
+			}
+			if (pass) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FrameFilterBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,96 @@
+package me.cth451.paperframe.bench;
+
+import me.cth451.paperframe.util.Drawing;
+import me.cth451.paperframe.util.WireframeTemplate;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares outlining frame bounding boxes through the former Vector based drawLine path with {@link WireframeTemplate},
+ * at 1k and 10k frames per tick.
+ * <p>
+ * Run {@link WireframeBenchmark#main} from the test classpath, i.e. from an IDE after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireframeBenchmark {
+	@Param({"1000", "10000"})
+	public int frames;
+
+	private BoundingBox[] boxes;
+
+	@Setup
+	public void setup() {
+		boxes = new BoundingBox[frames];
+		for (int i = 0; i < frames; i++) {
+			/* A wall of north facing frames */
+			int x = i % 100;
+			int y = 64 + i / 100;
+			boxes[i] = new BoundingBox(x + 0.125, y + 0.125, 0.9375, x + 0.875, y + 0.875, 1.0);
+		}
+	}
+
+	@Benchmark
+	public void vectorLines(Blackhole bh) {
+		Drawing.ParticleSink sink = (x, y, z, options) -> bh.consume(x + y + z);
+		for (BoundingBox box : boxes) {
+			vectorBox(box, sink);
+		}
+	}
+
+	@Benchmark
+	public void template(Blackhole bh) {
+		Drawing.ParticleSink sink = (x, y, z, options) -> bh.consume(x + y + z);
+		for (BoundingBox box : boxes) {
+			Drawing.drawBoundingBox(box, sink, null);
+		}
+	}
+
+	/* Former Drawing.drawBoundingBox / drawLine implementation */
+	private static void vectorBox(BoundingBox box, Drawing.ParticleSink sink) {
+		double mx = box.getMinX();
+		double my = box.getMinY();
+		double mz = box.getMinZ();
+		double MX = box.getMaxX();
+		double MY = box.getMaxY();
+		double MZ = box.getMaxZ();
+		vectorLine(new Vector(mx, my, mz), new Vector(MX, my, mz), sink);
+		vectorLine(new Vector(MX, my, mz), new Vector(MX, my, MZ), sink);
+		vectorLine(new Vector(MX, my, MZ), new Vector(mx, my, MZ), sink);
+		vectorLine(new Vector(mx, my, MZ), new Vector(mx, my, mz), sink);
+		vectorLine(new Vector(mx, MY, mz), new Vector(MX, MY, mz), sink);
+		vectorLine(new Vector(MX, MY, mz), new Vector(MX, MY, MZ), sink);
+		vectorLine(new Vector(MX, MY, MZ), new Vector(mx, MY, MZ), sink);
+		vectorLine(new Vector(mx, MY, MZ), new Vector(mx, MY, mz), sink);
+		vectorLine(new Vector(mx, my, mz), new Vector(mx, MY, mz), sink);
+		vectorLine(new Vector(MX, my, mz), new Vector(MX, MY, mz), sink);
+		vectorLine(new Vector(MX, my, MZ), new Vector(MX, MY, MZ), sink);
+		vectorLine(new Vector(mx, my, MZ), new Vector(mx, MY, MZ), sink);
+	}
+
+	private static void vectorLine(Vector p1, Vector p2, Drawing.ParticleSink sink) {
+		double spacing = WireframeTemplate.DEFAULT_SPACING;
+		double distance = p1.distance(p2);
+		Vector vector = p2.clone().subtract(p1).normalize().multiply(spacing);
+		double length = 0;
+		for (; length < distance; p1.add(vector)) {
+			sink.spawn(p1.getX(), p1.getY(), p1.getZ(), null);
+			length += spacing;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(WireframeBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,47 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameFilterSetTest {
+
+	private static FrameSnapshot frame(boolean fixed, boolean visible, Material item, boolean stacked) {
+		return new FrameSnapshot(0, 0, 64, 0, 0, BlockFace.NORTH, fixed, visible, item, 1, stacked,
+		                         0, 64, 0, 0.75, 64.75, 0.0625);
+	}
+
+	@Test
+	void emptySetPassesEverything() {
+		FrameFilterSet set = new FrameFilterSet(List.of());
+		assertTrue(set.isEmpty());
+		assertTrue(set.test(frame(false, true, Material.FILLED_MAP, false)));
+		assertTrue(set.test(frame(true, false, Material.AIR, true)));
+	}
+
+	@Test
+	void allFiltersMustPass() {
+		FrameFilterSet set = new FrameFilterSet(List.of(FrameFilter.HIDDEN, FrameFilter.STACKED));
+		assertTrue(set.contains(FrameFilter.HIDDEN));
+		assertFalse(set.contains(FrameFilter.EMPTY));
+		assertTrue(set.test(frame(false, false, Material.FILLED_MAP, true)));
+		assertFalse(set.test(frame(false, true, Material.FILLED_MAP, true)));
+		assertFalse(set.test(frame(false, false, Material.FILLED_MAP, false)));
+	}
+
+	@Test
+	void matchesPerFilterEvaluation() {
+		List<FrameFilter> filters = List.of(FrameFilter.EMPTY, FrameFilter.PROTECTED, FrameFilter.EMPTY);
+		FrameFilterSet set = new FrameFilterSet(filters);
+		for (boolean fixed : new boolean[]{false, true}) {
+			for (Material item : new Material[]{Material.AIR, Material.FILLED_MAP}) {
+				FrameSnapshot f = frame(fixed, true, item, false);
+				assertEquals(filters.stream().allMatch(filter -> filter.test(f)), set.test(f));
+			}
+		}
+	}
+}
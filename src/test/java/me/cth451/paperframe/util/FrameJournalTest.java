@@ -0,0 +1,76 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameJournalTest {
+
+	@Test
+	void fieldsSurvivePacking() {
+		FrameJournal journal = new FrameJournal();
+		long key = FrameIndex.blockKey(-30000000, -64, 29999999);
+		journal.add(FrameJournal.Kind.MODIFY, key, BlockFace.WEST, true, FrameJournal.NO_MAP,
+		            FrameJournal.FLAG_OTHER_ITEM, Integer.MAX_VALUE, FrameJournal.FLAG_FIXED | FrameJournal.FLAG_INVISIBLE);
+
+		assertEquals(1, journal.size());
+		assertEquals(FrameJournal.Kind.MODIFY, journal.kind(0));
+		assertEquals(key, journal.blockKey(0));
+		assertEquals(BlockFace.WEST, journal.facing(0));
+		assertTrue(journal.glow(0));
+		assertEquals(FrameJournal.NO_MAP, journal.mapBefore(0));
+		assertEquals(FrameJournal.FLAG_OTHER_ITEM, journal.flagsBefore(0));
+		assertEquals(Integer.MAX_VALUE, journal.mapAfter(0));
+		assertEquals(FrameJournal.FLAG_FIXED | FrameJournal.FLAG_INVISIBLE, journal.flagsAfter(0));
+	}
+
+	@Test
+	void growsAndSlices() {
+		FrameJournal journal = new FrameJournal(1);
+		for (int i = 0; i < 100; i++) {
+			journal.add(FrameJournal.Kind.REMOVE, FrameIndex.blockKey(i, 64, -i), BlockFace.UP, false, i, 0,
+			            FrameJournal.NO_MAP, 0);
+		}
+		assertEquals(100, journal.size());
+
+		FrameJournal slice = journal.slice(40, 50);
+		assertEquals(10, slice.size());
+		assertEquals(40, slice.mapBefore(0));
+		assertEquals(FrameJournal.Kind.REMOVE, slice.kind(9));
+		assertFalse(slice.glow(9));
+		assertThrows(IndexOutOfBoundsException.class, () -> journal.slice(50, 101));
+	}
+
+	@Test
+	void roundTrip() throws IOException {
+		FrameJournal journal = new FrameJournal();
+		journal.add(FrameJournal.Kind.CREATE, FrameIndex.blockKey(1, 2, 3), BlockFace.SOUTH, false,
+		            FrameJournal.NO_MAP, 0, 42, FrameJournal.FLAG_FIXED);
+		journal.add(FrameJournal.Kind.REMOVE, FrameIndex.blockKey(-1, 300, -3), BlockFace.DOWN, true,
+		            7, FrameJournal.FLAG_INVISIBLE, FrameJournal.NO_MAP, 0);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		journal.write(new DataOutputStream(bytes));
+		FrameJournal read = FrameJournal.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(2, read.size());
+		assertEquals(42, read.mapAfter(0));
+		assertEquals(BlockFace.SOUTH, read.facing(0));
+		assertEquals(FrameIndex.blockKey(-1, 300, -3), read.blockKey(1));
+		assertEquals(FrameJournal.Kind.REMOVE, read.kind(1));
+		assertEquals(FrameJournal.FLAG_INVISIBLE, read.flagsBefore(1));
+
+		assertThrows(IOException.class,
+		             () -> FrameJournal.read(new DataInputStream(new ByteArrayInputStream(new byte[8]))));
+	}
+}
@@ -0,0 +1,88 @@
+package me.cth451.paperframe.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OutlineMergerTest {
+
+	@Test
+	void singleFace() {
+		List<OutlineMerger.Face> faces = List.of(new OutlineMerger.Face(0, 64, 0, BlockFace.NORTH));
+		DrawList outline = OutlineMerger.outline(faces, 0.5);
+		assertEquals(8, outline.size());
+		double[] points = outline.toArray();
+		for (int x = 0; x <= 1; x++) {
+			for (int y = 64; y <= 65; y++) {
+				assertEquals(1, count(points, x, y, -1.0 / 32), "corner " + x + ", " + y);
+			}
+		}
+	}
+
+	@Test
+	void squareWallCornersAreDrawnOnce() {
+		List<OutlineMerger.Face> faces = new ArrayList<>();
+		for (int x = 0; x < 2; x++) {
+			for (int y = 64; y < 66; y++) {
+				faces.add(new OutlineMerger.Face(x, y, 0, BlockFace.NORTH));
+			}
+		}
+		double[] points = OutlineMerger.outline(faces, 0.5).toArray();
+		for (int x = 0; x <= 2; x += 2) {
+			for (int y = 64; y <= 66; y += 2) {
+				assertEquals(1, count(points, x, y, -1.0 / 32), "corner " + x + ", " + y);
+			}
+		}
+		/* Inner corners of the merged faces are not on the outline */
+		assertEquals(0, count(points, 1, 65, -1.0 / 32));
+	}
+
+	private static int count(double[] points, double x, double y, double z) {
+		int count = 0;
+		for (int i = 0; i < points.length; i += 3) {
+			if (Math.abs(points[i] - x) < 1e-9 && Math.abs(points[i + 1] - y) < 1e-9
+			    && Math.abs(points[i + 2] - z) < 1e-9) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	void squareWallIsOutlinedOnce() {
+		List<OutlineMerger.Face> faces = new ArrayList<>();
+		for (int x = 0; x < 2; x++) {
+			for (int y = 64; y < 66; y++) {
+				faces.add(new OutlineMerger.Face(x, y, 0, BlockFace.NORTH));
+			}
+		}
+		/* Perimeter of 8 blocks, instead of 4 separate outlines of 8 points each */
+		assertEquals(16, OutlineMerger.outline(faces, 0.5).size());
+	}
+
+	@Test
+	void outlineLiesOffTheFace() {
+		DrawList south = OutlineMerger.outline(List.of(new OutlineMerger.Face(0, 64, 0, BlockFace.SOUTH)), 0.5);
+		double[] points = south.toArray();
+		for (int i = 2; i < points.length; i += 3) {
+			assertEquals(1 + 1.0 / 32, points[i], 1e-9);
+		}
+
+		DrawList north = OutlineMerger.outline(List.of(new OutlineMerger.Face(0, 64, 0, BlockFace.NORTH)), 0.5);
+		points = north.toArray();
+		for (int i = 2; i < points.length; i += 3) {
+			assertEquals(-1.0 / 32, points[i], 1e-9);
+		}
+	}
+
+	@Test
+	void differentPlanesAreNotMerged() {
+		List<OutlineMerger.Face> faces = List.of(new OutlineMerger.Face(0, 64, 0, BlockFace.NORTH),
+		                                         new OutlineMerger.Face(1, 64, 0, BlockFace.SOUTH));
+		assertEquals(16, OutlineMerger.outline(faces, 0.5).size());
+	}
+}
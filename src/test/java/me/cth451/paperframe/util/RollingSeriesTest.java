@@ -0,0 +1,60 @@
+package me.cth451.paperframe.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RollingSeriesTest {
+
+	@Test
+	void emptySeries() {
+		RollingSeries series = new RollingSeries(16, 1000);
+		assertEquals(RollingSeries.Percentiles.EMPTY, series.percentiles(0));
+	}
+
+	@Test
+	void nearestRankPercentiles() {
+		RollingSeries series = new RollingSeries(128, 1000);
+		for (int i = 100; i >= 1; i--) {
+			series.record(i, 0);
+		}
+		RollingSeries.Percentiles p = series.percentiles(0);
+		assertEquals(100, p.count());
+		assertEquals(50, p.p50());
+		assertEquals(95, p.p95());
+		assertEquals(99, p.p99());
+		assertEquals(100, p.max());
+	}
+
+	@Test
+	void samplesOutsideWindowAreIgnored() {
+		RollingSeries series = new RollingSeries(16, 1000);
+		series.record(500, 0);
+		series.record(7, 1500);
+		RollingSeries.Percentiles p = series.percentiles(2000);
+		assertEquals(1, p.count());
+		assertEquals(7, p.max());
+	}
+
+	@Test
+	void oldestSamplesAreOverwritten() {
+		RollingSeries series = new RollingSeries(4, 1000);
+		for (int i = 1; i <= 6; i++) {
+			series.record(i, 0);
+		}
+		RollingSeries.Percentiles p = series.percentiles(0);
+		assertEquals(4, p.count());
+		assertEquals(4, p.p50());
+		assertEquals(6, p.max());
+	}
+
+	@Test
+	void spanCoversOnlyKeptSamples() {
+		RollingSeries series = new RollingSeries(2, 1000);
+		series.record(1, 100);
+		series.record(2, 600);
+		series.record(3, 800);
+		/* The sample at 100 was overwritten, so only 600..1000 is covered */
+		assertEquals(400, series.percentiles(1000).spanNanos());
+	}
+}
@@ -0,0 +1,53 @@
+package me.cth451.paperframe.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VoxelRayTest {
+
+	private static List<String> visit(double ox, double oy, double oz, double dx, double dy, double dz,
+	                                  double maxDistance) {
+		List<String> blocks = new ArrayList<>();
+		VoxelRay.traverse(ox, oy, oz, dx, dy, dz, maxDistance, (x, y, z) -> {
+			blocks.add(x + "," + y + "," + z);
+			return false;
+		});
+		return blocks;
+	}
+
+	@Test
+	void axisAligned() {
+		assertEquals(List.of("0,0,0", "1,0,0", "2,0,0", "3,0,0"), visit(0.5, 0.5, 0.5, 1, 0, 0, 3));
+		assertEquals(List.of("0,0,0", "0,0,-1", "0,0,-2"), visit(0.5, 0.5, 0.5, 0, 0, -1, 2));
+	}
+
+	@Test
+	void negativeCoordinates() {
+		assertEquals(List.of("-1,-1,-1", "-2,-1,-1"), visit(-0.5, -0.5, -0.5, -1, 0, 0, 1));
+	}
+
+	@Test
+	void diagonalVisitsEveryCrossedBlock() {
+		/* Crosses the x boundary at t ~ 0.56 and the y boundary at t ~ 1.01 */
+		List<String> blocks = visit(0.75, 0.1, 0.5, 1, 2, 0, 1.1);
+		assertEquals(List.of("0,0,0", "1,0,0", "1,1,0"), blocks);
+	}
+
+	@Test
+	void stopsWhenVisitorSaysSo() {
+		List<String> blocks = new ArrayList<>();
+		boolean stopped = VoxelRay.traverse(0.5, 0.5, 0.5, 1, 0, 0, 10, (x, y, z) -> {
+			blocks.add(x + "," + y + "," + z);
+			return x == 2;
+		});
+		assertTrue(stopped);
+		assertEquals(3, blocks.size());
+		assertFalse(VoxelRay.traverse(0.5, 0.5, 0.5, 1, 0, 0, 10, (x, y, z) -> false));
+	}
+}